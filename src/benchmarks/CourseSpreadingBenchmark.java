@@ -0,0 +1,76 @@
+package benchmarks;
+
+import callbacks.gurobi.SolveRecorder;
+import constraints.AvoidNoCourseSpreading;
+import importers.Importer;
+import importers.JsonImporter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.LinkedList;
+import java.util.Locale;
+import model.Model;
+import model.Solution;
+import problems.NatProblem;
+import solvers.GurobiSolver;
+import util.AsciiTable;
+
+// Compares the formulations of AvoidNoCourseSpreading on the weeks of an input file by root bound, node count and time to a 1% gap.
+// Every week is solved in isolation (without stability bonuses from earlier weeks), so both formulations solve exactly the same problems.
+// Example: java -cp "bin/TimetableScheduler.jar:bin/lib/*" benchmarks.CourseSpreadingBenchmark data/Y2014_Spring.json 600
+public class CourseSpreadingBenchmark
+{
+	private static final double TARGET_GAP = 0.01;
+	private static final int DEFAULT_TIME_LIMIT = 60 * 10;
+	private static final DecimalFormat VALUE_FORMAT = new DecimalFormat("0.00", new DecimalFormatSymbols(Locale.ENGLISH));
+	
+	public static void main(String[] args)
+	{
+		if (args.length < 1 || args.length > 2)
+		{
+			System.out.println("Usage: <input file> [time limit per solve in seconds]");
+			System.out.println("Defaults: <none> " + DEFAULT_TIME_LIMIT);
+			return;
+		}
+		
+		Importer importer = new JsonImporter(args[0]);
+		int timeLimit = (args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_TIME_LIMIT);
+		
+		AsciiTable resultsTable = new AsciiTable(true, true, false, false, false, false, false);
+		resultsTable.addRow("Problem", "Formulation", "Root bound", "Nodes", "Time to 1% gap", "Objective", "Bound");
+		resultsTable.addDelimiter();
+		
+		for (int week = 0; week <= 53; week++)
+		{
+			for (AvoidNoCourseSpreading.Formulation formulation : AvoidNoCourseSpreading.Formulation.values())
+			{
+				Model model = NatProblem.setupModel(importer, week);
+				
+				if (model.sessions().isEmpty())
+				{
+					break;
+				}
+				
+				try (GurobiSolver solver = new GurobiSolver(model, formulation == AvoidNoCourseSpreading.Formulation.INDICATOR))	// The indicator formulation is built on the day indicators of the solver
+				{
+					NatProblem.setupConstraints(solver, model, new LinkedList<Solution>(), formulation);
+					SolveRecorder recorder = new SolveRecorder(TARGET_GAP, true, timeLimit);
+					solver.addCallback(recorder);
+					solver.solve(false);
+					
+					resultsTable.addRow
+					(
+						model.modelName,
+						formulation,
+						VALUE_FORMAT.format(recorder.rootBound()),
+						Math.round(recorder.nodeCount()),
+						(recorder.targetGapTime() == null ? ">" + timeLimit + "s" : VALUE_FORMAT.format(recorder.targetGapTime()) + "s"),
+						VALUE_FORMAT.format(recorder.bestResult()),
+						VALUE_FORMAT.format(recorder.bestBound())
+					);
+				}
+			}
+		}
+		
+		System.out.println(resultsTable);
+	}
+}
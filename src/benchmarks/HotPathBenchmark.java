@@ -0,0 +1,292 @@
+package benchmarks;
+
+import constraints.AvoidNoCourseSpreading;
+import constraints.Constraint;
+import exporters.HtmlExporter;
+import importers.Importer;
+import importers.JsonImporter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import model.Day;
+import model.Model;
+import model.Session;
+import model.Slot;
+import model.Solution;
+import org.javatuples.Pair;
+import problems.NatProblem;
+import solvers.BuildOnlySolver;
+import util.AsciiTable;
+import util.Statistics;
+import util.Tools;
+
+// Measures the hot paths outside of the solver: importing, model lookups, building assignment variables and constraints, exporting and evaluating.
+// The model is built with BuildOnlySolver, so neither Gurobi nor a licence is needed. Every benchmark runs on the largest week of the input file,
+// replicated by InstanceScaler for each of the given scales. Results can be saved as a baseline and later runs compared against it.
+// Example: java -cp "bin/TimetableScheduler.jar:bin/lib/*" benchmarks.HotPathBenchmark data/Y2014_Spring.json 1,4,16 benchmarks.properties compare
+public class HotPathBenchmark
+{
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 20;
+	private static final double REGRESSION_THRESHOLD = 0.10;	// Relative slowdown of the mean compared to the baseline which is reported as a regression
+	private static final String DEFAULT_SCALES = "1,4,16";
+	private static final String DEFAULT_BASELINE_FILE = "benchmarks.properties";
+	private static final String DATA_FOLDER = "data";
+	private static final DecimalFormat VALUE_FORMAT = new DecimalFormat("0.000", new DecimalFormatSymbols(Locale.ENGLISH));
+	private static final DecimalFormat PERCENT_FORMAT = new DecimalFormat("+0.0%;-0.0%", new DecimalFormatSymbols(Locale.ENGLISH));
+	
+	// Measured milliseconds per benchmark of the current scale, in the order the benchmarks were first run
+	private final Map<String, List<Double>> samples = new LinkedHashMap<>();
+	private final File exportFolder;
+	
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1 || args.length > 4)
+		{
+			System.out.println("Usage: <input file> [scales] [baseline file] [save|compare]");
+			System.out.println("Defaults: <none> " + DEFAULT_SCALES + " '" + DEFAULT_BASELINE_FILE + "' compare");
+			return;
+		}
+		
+		File inputFile = new File(args[0]);
+		String[] scales = (args.length >= 2 ? args[1] : DEFAULT_SCALES).split(",");
+		File baselineFile = new File(args.length >= 3 ? args[2] : DEFAULT_BASELINE_FILE);
+		boolean save = (args.length >= 4 && args[3].equals("save"));
+		
+		if (args.length >= 4 && !save && !args[3].equals("compare"))
+		{
+			throw new IllegalArgumentException("Unknown baseline mode '" + args[3] + "'. Use save or compare.");
+		}
+		
+		Properties baseline = new Properties();
+		
+		if (!save && baselineFile.exists())
+		{
+			try (InputStream input = new FileInputStream(baselineFile))
+			{
+				baseline.load(input);
+			}
+		}
+		
+		Properties results = new Properties();
+		AsciiTable resultsTable = new AsciiTable(true, false, false, false, false, false, false);
+		resultsTable.addRow("Benchmark", "Scale", "Mean ms", "Stdev ms", "Min ms", "Baseline ms", "Change");
+		resultsTable.addDelimiter();
+		int regressions = 0;
+		
+		for (int i = 0; i < scales.length; i++)
+		{
+			int scale = Integer.parseInt(scales[i].trim());
+			
+			if (i > 0)
+			{
+				resultsTable.addDelimiter();
+			}
+			
+			HotPathBenchmark benchmark = new HotPathBenchmark();
+			benchmark.run(InstanceScaler.scale(inputFile, scale).getPath());
+			
+			for (Map.Entry<String, List<Double>> entry : benchmark.samples.entrySet())
+			{
+				String key = entry.getKey() + "@" + scale;
+				List<Double> values = entry.getValue();
+				double mean = Statistics.mean(values);
+				String baselineMean = baseline.getProperty(key);
+				String change = "";
+				
+				if (baselineMean != null)
+				{
+					double relativeChange = mean / Double.parseDouble(baselineMean) - 1;
+					change = PERCENT_FORMAT.format(relativeChange);
+					
+					if (relativeChange > REGRESSION_THRESHOLD)
+					{
+						change += " REGRESSION";
+						regressions++;
+					}
+				}
+				
+				results.setProperty(key, Double.toString(mean));
+				resultsTable.addRow(entry.getKey(), scale, VALUE_FORMAT.format(mean), VALUE_FORMAT.format(Statistics.stdev(values)), VALUE_FORMAT.format(Statistics.min(values)), (baselineMean == null ? "" : VALUE_FORMAT.format(Double.parseDouble(baselineMean))), change);
+			}
+		}
+		
+		System.out.println(resultsTable);
+		
+		if (save)
+		{
+			try (OutputStream output = new FileOutputStream(baselineFile))
+			{
+				results.store(output, "HotPathBenchmark baseline for " + inputFile + " (mean milliseconds per benchmark@scale)");
+			}
+			
+			System.out.println("Saved baseline to '" + baselineFile + "'");
+		}
+		else if (!baseline.isEmpty())
+		{
+			System.out.println(regressions + " benchmark(s) are more than " + PERCENT_FORMAT.format(REGRESSION_THRESHOLD) + " slower than the baseline in '" + baselineFile + "'");
+		}
+	}
+	
+	private HotPathBenchmark() throws IOException
+	{
+		exportFolder = Files.createTempDirectory("benchmark-export").toFile();
+	}
+	
+	private void run(final String inputPath) throws IOException
+	{
+		final Importer importer = new JsonImporter(inputPath, false);
+		final int week = largestWeek(importer);
+		final Model model = NatProblem.setupModel(importer, week);
+		final Solution solution = spreadSolution(model);
+		final HtmlExporter exporter = new HtmlExporter(DATA_FOLDER, exportFolder.getPath());	// One exporter for all iterations, like a run uses one for all weeks
+		System.out.println("Benchmarking week " + week + " with " + model.sessions().size() + " sessions and " + model.persons().size() + " persons");
+		
+		try
+		{
+			for (int iteration = -WARMUP_ITERATIONS; iteration < MEASURED_ITERATIONS; iteration++)
+			{
+				boolean measured = (iteration >= 0);
+				long start;
+				
+				start = System.nanoTime();
+				NatProblem.setupModel(new JsonImporter(inputPath, false), week);	// A new importer parses the input file again, as the cache is disabled
+				record("JsonImporter.importProblem", start, measured);
+				
+				start = System.nanoTime();
+				int indexSum = 0;
+				
+				for (Session session : model.sessions())
+				{
+					indexSum += model.indexOf(session);
+				}
+				
+				for (Day day : model.days())
+				{
+					indexSum += model.indexOf(day);
+				}
+				
+				for (Slot slot : model.slots())
+				{
+					indexSum += model.indexOf(slot);
+				}
+				
+				record("Model.indexOf", start, measured && indexSum >= 0);		// The sum is used to keep the lookups from being optimized away
+				
+				start = System.nanoTime();
+				new BuildOnlySolver(model).createAssignmentVars();
+				record("AssignmentVars", start, measured);
+				
+				BuildOnlySolver solver = new BuildOnlySolver(model);
+				NatProblem.setupConstraints(solver, model, new LinkedList<Solution>(), AvoidNoCourseSpreading.Formulation.TRIGGER);
+				solver.build();
+				
+				for (Constraint constraint : solver.constraints())
+				{
+					if (measured)
+					{
+						sample(constraint.toString(), solver.buildNanos(constraint));
+					}
+				}
+				
+				Tools.deleteRecursive(exportFolder, false);		// Every export writes all timetables from scratch
+				start = System.nanoTime();
+				exporter.export(model, solution, true);
+				record("HtmlExporter.export", start, measured);
+				
+				start = System.nanoTime();
+				NatProblem.setupEvaluator(model, new LinkedList<Solution>()).load(solution);
+				record("SolutionEvaluator.load", start, measured);
+			}
+		}
+		finally
+		{
+			Tools.deleteRecursive(exportFolder, true);
+		}
+	}
+	
+	private void record(String benchmark, long start, boolean measured)
+	{
+		long nanos = System.nanoTime() - start;
+		
+		if (measured)
+		{
+			sample(benchmark, nanos);
+		}
+	}
+	
+	private void sample(String benchmark, long nanos)
+	{
+		List<Double> values = samples.get(benchmark);
+		
+		if (values == null)
+		{
+			values = new ArrayList<>();
+			samples.put(benchmark, values);
+		}
+		
+		values.add(nanos / 1e6);
+	}
+	
+	// The week with the most sessions is the one whose build times matter the most
+	private static int largestWeek(Importer importer)
+	{
+		int largestWeek = -1;
+		int largestSize = 0;
+		
+		for (int week = 0; week <= 53; week++)
+		{
+			int size = NatProblem.setupModel(importer, week).sessions().size();
+			
+			if (size > largestSize)
+			{
+				largestWeek = week;
+				largestSize = size;
+			}
+		}
+		
+		if (largestWeek == -1)
+		{
+			throw new IllegalArgumentException("Input file has no sessions to schedule");
+		}
+		
+		return largestWeek;
+	}
+	
+	// A feasible solution is not needed for exporting and evaluating. Sessions are simply spread over the days at the first slots they fit.
+	private static Solution spreadSolution(Model model)
+	{
+		Map<Session, Pair<Day, Slot>> schedule = new HashMap<>();
+		int sessionIndex = 0;
+		
+		for (Session session : model.sessions())
+		{
+			Day day = model.days().get(sessionIndex++ % model.days().size());
+			
+			for (Slot slot : model.slots())
+			{
+				if (model.sessionFits(session, slot))
+				{
+					schedule.put(session, new Pair<>(day, slot));
+					break;
+				}
+			}
+		}
+		
+		return new Solution(model, schedule);
+	}
+}
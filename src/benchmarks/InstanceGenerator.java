@@ -0,0 +1,387 @@
+package benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Random;
+
+// Generates synthetic input files of (up to) faculty scale in the format read by JsonImporter. The same settings and seed always give the same file.
+// Every course has a shared lecture for all its groups and exercise sessions per group, spread over a span of weeks. Some courses also have room-bound
+// labs, and some sessions are restricted to certain times. Students each follow a number of courses, getting a group in each. Groups are filled
+// round-robin, so every group gets students as long as there are enough of them. The file is written as a stream, so large instances fit in memory.
+// Example: java -cp "bin/TimetableScheduler.jar:bin/lib/*" benchmarks.InstanceGenerator faculty.json courses=400 groupsMax=12 studentsPerGroup=25
+public class InstanceGenerator
+{
+	// Days, hours and rooms of the model set up by NatProblem.setupModel. Saturday is left out, as nothing is meant to be placed there.
+	private static final String[] DAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
+	private static final int FIRST_HOUR = 8;
+	private static final int LAST_HOUR = 17;
+	private static final String[] ROOMS = {"Lab 3 og 4", "Lab 5 og 6", "IMADAs terminalrum", "Fysik øvelseslab"};
+	
+	// The knobs of the generator. Can be set by name from the command line.
+	public static class Settings
+	{
+		public long seed = 1;
+		public int courses = 40;
+		public int groupsMin = 2;					// Exercise groups per course
+		public int groupsMax = 8;
+		public int studentsPerGroup = 25;			// Average number of students per exercise group
+		public int coursesPerStudent = 3;
+		public int firstWeek = 5;
+		public int lastWeek = 12;
+		public int weeksPerCourse = 6;				// Courses run for this many consecutive weeks between the first and last week
+		public int lecturesPerWeek = 2;
+		public int exercisesPerWeek = 1;
+		public int staffPerCourse = 3;				// One lecturer plus teaching assistants sharing the exercise groups
+		public double staffSharing = 1.5;			// Average number of courses taught by every staff member
+		public double whitelistDensity = 0.05;		// Fraction of session specifications restricted to a single start time
+		public double blacklistDensity = 0.05;		// Fraction of session specifications denied a whole day
+		public double labFraction = 0.2;			// Fraction of courses having room-bound labs
+		public int labLength = 4;
+		
+		public int students()
+		{
+			return (int) Math.ceil(courses * (groupsMin + groupsMax) / 2.0 * studentsPerGroup / coursesPerStudent);
+		}
+		
+		public void validate()
+		{
+			if (courses < 1 || groupsMin < 1 || groupsMax < groupsMin || studentsPerGroup < 1 || staffPerCourse < 1 || staffSharing < 1 || lecturesPerWeek < 0 || exercisesPerWeek < 1)
+			{
+				throw new IllegalArgumentException("Settings must give every course at least one group, student, staff and exercise, and have staffSharing >= 1 and groupsMax >= groupsMin");
+			}
+			
+			if (coursesPerStudent < 1 || coursesPerStudent > courses)
+			{
+				throw new IllegalArgumentException("Students must follow between 1 and " + courses + " courses");
+			}
+			
+			if (firstWeek < 0 || lastWeek > 53 || weeksPerCourse < 1 || weeksPerCourse > lastWeek - firstWeek + 1)
+			{
+				throw new IllegalArgumentException("Courses must run for between 1 and " + (lastWeek - firstWeek + 1) + " weeks within weeks 0 to 53");
+			}
+			
+			if (labLength < 1 || labLength > LAST_HOUR - FIRST_HOUR + 1)
+			{
+				throw new IllegalArgumentException("Labs must fit within a day");
+			}
+			
+			if (students() / courses < groupsMax)		// The round-robin first courses alone must fill every group
+			{
+				throw new IllegalArgumentException("Too few students to fill every group. Increase studentsPerGroup or decrease coursesPerStudent.");
+			}
+		}
+		
+		public void set(String name, String value)
+		{
+			try
+			{
+				Field field = Settings.class.getField(name);
+				
+				if (field.getType() == long.class)
+				{
+					field.setLong(this, Long.parseLong(value));
+				}
+				else if (field.getType() == int.class)
+				{
+					field.setInt(this, Integer.parseInt(value));
+				}
+				else
+				{
+					field.setDouble(this, Double.parseDouble(value));
+				}
+			}
+			catch (NoSuchFieldException | IllegalAccessException ex)
+			{
+				throw new IllegalArgumentException("Unknown setting '" + name + "'", ex);
+			}
+		}
+		
+		@Override
+		public String toString()
+		{
+			StringBuilder text = new StringBuilder();
+			
+			for (Field field : Settings.class.getFields())
+			{
+				try
+				{
+					text.append(text.length() == 0 ? "" : " ").append(field.getName()).append('=').append(field.get(this));
+				}
+				catch (IllegalAccessException ex)
+				{
+					throw new RuntimeException(ex);
+				}
+			}
+			
+			return text.toString();
+		}
+	}
+	
+	private final Settings settings;
+	private final Random random;
+	private final int[] groupCounts;
+	private final int[] firstWeeks;
+	private final boolean[] hasLabs;
+	private final int staffCount;
+	
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage: <output file> [setting=value ...]");
+			System.out.println("Defaults: <none> " + new Settings());
+			return;
+		}
+		
+		Settings settings = new Settings();
+		
+		for (int i = 1; i < args.length; i++)
+		{
+			String[] setting = args[i].split("=", 2);
+			
+			if (setting.length != 2)
+			{
+				throw new IllegalArgumentException("Settings must be given as name=value, not '" + args[i] + "'");
+			}
+			
+			settings.set(setting[0], setting[1]);
+		}
+		
+		long enrollments = generate(new File(args[0]), settings);
+		System.out.println("Generated " + settings.courses + " courses, " + settings.students() + " students and " + enrollments + " enrollments to '" + args[0] + "'");
+	}
+	
+	// Writes an instance with the given settings to a file and returns the number of enrollments (students times courses followed)
+	public static long generate(File outputFile, Settings settings) throws IOException
+	{
+		settings.validate();
+		return new InstanceGenerator(settings).write(outputFile);
+	}
+	
+	private InstanceGenerator(Settings settings)
+	{
+		this.settings = settings;
+		random = new Random(settings.seed);
+		groupCounts = new int[settings.courses];
+		firstWeeks = new int[settings.courses];
+		hasLabs = new boolean[settings.courses];
+		staffCount = (int) Math.ceil(settings.courses * settings.staffPerCourse / settings.staffSharing);
+		
+		for (int course = 0; course < settings.courses; course++)
+		{
+			groupCounts[course] = settings.groupsMin + random.nextInt(settings.groupsMax - settings.groupsMin + 1);
+			firstWeeks[course] = settings.firstWeek + random.nextInt(settings.lastWeek - settings.firstWeek - settings.weeksPerCourse + 2);
+			hasLabs[course] = random.nextDouble() < settings.labFraction;
+		}
+	}
+	
+	private long write(File outputFile) throws IOException
+	{
+		try (JsonGenerator json = new JsonFactory().createGenerator(outputFile, JsonEncoding.UTF8))
+		{
+			json.setPrettyPrinter(new DefaultPrettyPrinter());
+			json.writeRaw("/*\n\tGenerated by InstanceGenerator with " + settings + "\n*/\n");
+			json.writeStartObject();
+			
+			json.writeObjectFieldStart("courses");
+			
+			for (int course = 0; course < settings.courses; course++)
+			{
+				writeCourse(json, course);
+			}
+			
+			json.writeEndObject();
+			
+			json.writeObjectFieldStart("students");
+			long enrollments = writeStudents(json);
+			json.writeEndObject();
+			
+			json.writeEndObject();
+			
+			return enrollments;
+		}
+	}
+	
+	private void writeCourse(JsonGenerator json, int course) throws IOException
+	{
+		json.writeArrayFieldStart(courseName(course));
+		
+		// Staff of the course. The first is the lecturer, while the rest (or the lecturer alone) share the exercise groups.
+		String[] staffs = new String[settings.staffPerCourse];
+		
+		for (int i = 0; i < staffs.length; i++)
+		{
+			staffs[i] = "Staff " + ((course * settings.staffPerCourse + i) % staffCount);
+		}
+		
+		if (settings.lecturesPerWeek > 0)
+		{
+			json.writeStartObject();
+			writeWeeks(json, course, settings.lecturesPerWeek);
+			json.writeNumberField("length", 2);
+			json.writeStringField("type", "I");
+			json.writeStringField("groups", "I");
+			json.writeStringField("staff", staffs[0]);
+			writeTimes(json, 2);
+			json.writeEndObject();
+		}
+		
+		json.writeStartObject();
+		writeWeeks(json, course, settings.exercisesPerWeek);
+		json.writeNumberField("length", 2);
+		json.writeStringField("type", "TE");
+		writeGroups(json, course);
+		json.writeArrayFieldStart("staff");
+		
+		for (int group = 0; group < groupCounts[course]; group++)
+		{
+			json.writeString(staffs.length == 1 ? staffs[0] : staffs[1 + group % (staffs.length - 1)]);
+		}
+		
+		json.writeEndArray();
+		writeTimes(json, 2);
+		json.writeEndObject();
+		
+		if (hasLabs[course])
+		{
+			json.writeStartObject();
+			writeWeeks(json, course, 1);
+			json.writeNumberField("length", settings.labLength);
+			json.writeStringField("type", "TL");
+			writeGroups(json, course);
+			json.writeStringField("room", ROOMS[random.nextInt(ROOMS.length)]);
+			json.writeNumberField("roombreak", 1);
+			writeTimes(json, settings.labLength);
+			json.writeEndObject();
+		}
+		
+		json.writeEndArray();
+	}
+	
+	// A week occurring several times in the list gives several sessions that week
+	private void writeWeeks(JsonGenerator json, int course, int perWeek) throws IOException
+	{
+		json.writeArrayFieldStart("weeks");
+		
+		for (int week = firstWeeks[course]; week < firstWeeks[course] + settings.weeksPerCourse; week++)
+		{
+			for (int i = 0; i < perWeek; i++)
+			{
+				json.writeNumber(week);
+			}
+		}
+		
+		json.writeEndArray();
+	}
+	
+	private void writeGroups(JsonGenerator json, int course) throws IOException
+	{
+		json.writeArrayFieldStart("groups");
+		
+		for (int group = 0; group < groupCounts[course]; group++)
+		{
+			json.writeString(groupName(group));
+		}
+		
+		json.writeEndArray();
+	}
+	
+	private void writeTimes(JsonGenerator json, int length) throws IOException
+	{
+		if (random.nextDouble() < settings.whitelistDensity)
+		{
+			json.writeObjectFieldStart("times");
+			json.writeStringField("days", DAYS[random.nextInt(DAYS.length)]);
+			json.writeNumberField("hours", FIRST_HOUR + random.nextInt(LAST_HOUR - FIRST_HOUR + 2 - length));
+			json.writeEndObject();
+		}
+		else if (random.nextDouble() < settings.blacklistDensity)
+		{
+			json.writeObjectFieldStart("denytimes");
+			json.writeStringField("days", DAYS[random.nextInt(DAYS.length)]);
+			json.writeEndObject();
+		}
+	}
+	
+	private long writeStudents(JsonGenerator json) throws IOException
+	{
+		int[] nextGroups = new int[settings.courses];	// Groups of every course are filled round-robin
+		int[] courses = new int[settings.courses];		// Partial shuffle buffer for picking distinct courses
+		long enrollments = 0;
+		
+		for (int course = 0; course < courses.length; course++)
+		{
+			courses[course] = course;
+		}
+		
+		for (int student = 0; student < settings.students(); student++)
+		{
+			json.writeObjectFieldStart("Student " + student);
+			json.writeArrayFieldStart("attendance");
+			
+			// The first course goes round-robin, so every course gets its share of students. The rest are random.
+			int firstCourse = student % settings.courses;
+			swap(courses, 0, indexOf(courses, firstCourse));
+			
+			for (int i = 0; i < settings.coursesPerStudent; i++)
+			{
+				if (i > 0)
+				{
+					swap(courses, i, i + random.nextInt(courses.length - i));
+				}
+				
+				int course = courses[i];
+				json.writeStartObject();
+				json.writeStringField("course", courseName(course));
+				json.writeArrayFieldStart("groups");
+				json.writeString("I");
+				json.writeString(groupName(nextGroups[course]));
+				json.writeEndArray();
+				json.writeEndObject();
+				
+				nextGroups[course] = (nextGroups[course] + 1) % groupCounts[course];
+				enrollments++;
+			}
+			
+			json.writeEndArray();
+			json.writeEndObject();
+		}
+		
+		return enrollments;
+	}
+	
+	private static String courseName(int course)
+	{
+		return "Course " + course;
+	}
+	
+	private static String groupName(int group)
+	{
+		return "S" + (group + 1);
+	}
+	
+	private static void swap(int[] array, int i, int j)
+	{
+		int value = array[i];
+		array[i] = array[j];
+		array[j] = value;
+	}
+	
+	private static int indexOf(int[] array, int value)
+	{
+		for (int i = 0; i < array.length; i++)
+		{
+			if (array[i] == value)
+			{
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+// Makes larger instances out of an input file by replicating it a number of times. Every copy gets its own courses, staff and students
+// (their names get a suffix), while days, slots and rooms are shared. Sessions per week thus grow linearly with the scale and rooms get more crowded.
+public class InstanceScaler
+{
+	private static final ObjectMapper jsonMapper = new ObjectMapper();
+	
+	static
+	{
+		jsonMapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+	}
+	
+	private InstanceScaler()
+	{
+	}
+	
+	// Writes the input file replicated scale times to a temporary file, which is deleted on exit. Scale 1 returns the input file itself.
+	public static File scale(File inputFile, int scale)
+	{
+		if (scale < 1)
+		{
+			throw new IllegalArgumentException("Scale must be at least 1");
+		}
+		
+		if (scale == 1)
+		{
+			return inputFile;
+		}
+		
+		try
+		{
+			JsonNode input = jsonMapper.readTree(inputFile);
+			ObjectNode output = jsonMapper.createObjectNode();
+			ObjectNode courses = output.putObject("courses");
+			ObjectNode students = output.putObject("students");
+			
+			for (int copy = 0; copy < scale; copy++)
+			{
+				String suffix = (copy == 0 ? "" : " #" + copy);
+				
+				for (Iterator<Map.Entry<String, JsonNode>> iter = input.get("courses").fields(); iter.hasNext(); )
+				{
+					Map.Entry<String, JsonNode> courseEntry = iter.next();
+					ArrayNode specs = courses.putArray(courseEntry.getKey() + suffix);
+					
+					for (JsonNode spec : courseEntry.getValue())
+					{
+						ObjectNode specCopy = (ObjectNode) spec.deepCopy();
+						
+						if (specCopy.has("staff"))
+						{
+							specCopy.put("staff", suffixTexts(specCopy.get("staff"), suffix));
+						}
+						
+						specs.add(specCopy);
+					}
+				}
+				
+				for (Iterator<Map.Entry<String, JsonNode>> iter = input.get("students").fields(); iter.hasNext(); )
+				{
+					Map.Entry<String, JsonNode> studentEntry = iter.next();
+					ObjectNode studentCopy = (ObjectNode) studentEntry.getValue().deepCopy();
+					
+					for (JsonNode attendance : studentCopy.get("attendance"))
+					{
+						((ObjectNode) attendance).put("course", attendance.get("course").asText() + suffix);
+					}
+					
+					students.put(studentEntry.getKey() + suffix, studentCopy);
+				}
+			}
+			
+			File outputFile = File.createTempFile(inputFile.getName().replaceFirst("\\.json$", "") + "-x" + scale + "-", ".json");
+			outputFile.deleteOnExit();
+			jsonMapper.writeValue(outputFile, output);
+			
+			return outputFile;
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	// Staff can be given as a string, a list of strings or a list of lists of strings (one per group)
+	private static JsonNode suffixTexts(JsonNode node, String suffix)
+	{
+		if (node.isTextual())
+		{
+			return new TextNode(node.asText() + suffix);
+		}
+		else if (node.isArray())
+		{
+			ArrayNode array = jsonMapper.createArrayNode();
+			
+			for (JsonNode element : node)
+			{
+				array.add(suffixTexts(element, suffix));
+			}
+			
+			return array;
+		}
+		
+		return node;
+	}
+}
@@ -0,0 +1,250 @@
+package benchmarks;
+
+import callbacks.gurobi.SolveRecorder;
+import callbacks.gurobi.TerminationFinisher;
+import callbacks.gurobi.TerminationPolicies;
+import constraints.AvoidNoCourseSpreading;
+import importers.Importer;
+import importers.JsonImporter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import model.Model;
+import model.Solution;
+import problems.NatProblem;
+import solvers.GurobiSolver;
+import util.AsciiTable;
+import util.Statistics;
+
+// Runs the semester pipeline of NatProblem (every week in order, with stability towards earlier weeks) over a corpus of input files, once per seed.
+// Fixed seeds make the solves repeatable, so differences between two versions can be told apart from luck by comparing the distributions over
+// the seeds. Per week, the build time, time to first incumbent, time to a 1% gap and final objective are recorded. Saved baselines keep every
+// sample, and a later run flags metrics whose mean got significantly worse by a one-sided Welch's t-test.
+// Times not reached within the time limit are recorded as the time limit.
+// Example: java -cp "bin/TimetableScheduler.jar:bin/lib/*" benchmarks.SemesterBenchmark 1,2,3,4,5 300 semester.properties compare data/Y2014_Spring.json
+public class SemesterBenchmark
+{
+	private static final double TARGET_GAP = 0.01;
+	private static final double SIGNIFICANCE_LEVEL = 0.05;
+	private static final String[] METRICS = {"build", "firstIncumbent", "targetGap", "objective"};
+	private static final String[] METRIC_NAMES = {"Build s", "First incumbent s", "Time to 1% gap s", "Objective"};
+	private static final DecimalFormat VALUE_FORMAT = new DecimalFormat("0.00", new DecimalFormatSymbols(Locale.ENGLISH));
+	private static final DecimalFormat P_VALUE_FORMAT = new DecimalFormat("0.000", new DecimalFormatSymbols(Locale.ENGLISH));
+	
+	// Samples over all seeds, keyed by "<input file name>@<week>.<metric>", in the order they were first recorded
+	private final Map<String, List<Double>> samples = new LinkedHashMap<>();
+	private final double timeLimit;
+	
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 5)
+		{
+			System.out.println("Usage: <seeds> <time limit per week in seconds> <baseline file> <save|compare> <input file> [input file ...]");
+			System.out.println("Example: 1,2,3,4,5 300 semester.properties compare data/Y2014_Spring.json");
+			return;
+		}
+		
+		String[] seeds = args[0].split(",");
+		SemesterBenchmark benchmark = new SemesterBenchmark(Double.parseDouble(args[1]));
+		File baselineFile = new File(args[2]);
+		boolean save = args[3].equals("save");
+		
+		if (!save && !args[3].equals("compare"))
+		{
+			throw new IllegalArgumentException("Unknown baseline mode '" + args[3] + "'. Use save or compare.");
+		}
+		
+		for (String inputFile : Arrays.copyOfRange(args, 4, args.length))
+		{
+			for (String seed : seeds)
+			{
+				System.out.println("Solving '" + inputFile + "' with seed " + seed.trim());
+				benchmark.runSemester(new File(inputFile), Integer.parseInt(seed.trim()));
+			}
+		}
+		
+		Properties baseline = new Properties();
+		
+		if (!save && baselineFile.exists())
+		{
+			try (InputStream input = new FileInputStream(baselineFile))
+			{
+				baseline.load(input);
+			}
+		}
+		
+		System.out.println(benchmark.report(baseline));
+		
+		if (save)
+		{
+			try (OutputStream output = new FileOutputStream(baselineFile))
+			{
+				benchmark.toProperties().store(output, "SemesterBenchmark baseline for seeds " + args[0] + " with a time limit of " + args[1] + " seconds per week");
+			}
+			
+			System.out.println("Saved baseline to '" + baselineFile + "'");
+		}
+	}
+	
+	private SemesterBenchmark(double timeLimit)
+	{
+		this.timeLimit = timeLimit;
+	}
+	
+	private void runSemester(File inputFile, int seed)
+	{
+		Importer importer = new JsonImporter(inputFile.getPath());
+		LinkedList<Solution> schedules = new LinkedList<>();
+		
+		for (int week = 0; week <= 53; week++)
+		{
+			Model model = NatProblem.setupModel(importer, week);
+			
+			if (model.sessions().isEmpty())
+			{
+				continue;
+			}
+			
+			try (GurobiSolver solver = new GurobiSolver(model))
+			{
+				solver.setSeed(seed);
+				NatProblem.setupConstraints(solver, model, schedules, AvoidNoCourseSpreading.Formulation.TRIGGER);
+				
+				SolveRecorder recorder = new SolveRecorder(TARGET_GAP, false, timeLimit);
+				solver.addCallback(recorder);
+				solver.addCallback(new TerminationFinisher(TerminationPolicies.absoluteGapBelowSmallestPenalty()));	// Ends weeks the same way as NatProblem does
+				
+				if (!solver.solve(false))
+				{
+					System.out.println("No solution found for " + model.modelName + " with seed " + seed + ". Skipping the rest of the semester.");
+					return;
+				}
+				
+				String key = inputFile.getName() + "@" + week + ".";
+				sample(key + METRICS[0], solver.buildSeconds());
+				sample(key + METRICS[1], (recorder.firstSolutionTime() == null ? timeLimit : recorder.firstSolutionTime()));
+				sample(key + METRICS[2], (recorder.targetGapTime() == null ? timeLimit : recorder.targetGapTime()));
+				sample(key + METRICS[3], solver.objectiveValue());
+				
+				schedules.add(new Solution(model, solver.schedulingMap()));
+			}
+		}
+	}
+	
+	private void sample(String key, double value)
+	{
+		List<Double> values = samples.get(key);
+		
+		if (values == null)
+		{
+			values = new ArrayList<>();
+			samples.put(key, values);
+		}
+		
+		values.add(value);
+	}
+	
+	private String report(Properties baseline)
+	{
+		AsciiTable table = new AsciiTable(true, true, false, false, false, false, false, false, false, false, true);
+		table.addRow("Problem", "Metric", "Seeds", "Mean", "Stdev", "Min", "Max", "Baseline mean", "Baseline stdev", "p (worse)", "");
+		String previousProblem = null;
+		int significant = 0;
+		
+		for (Map.Entry<String, List<Double>> entry : samples.entrySet())
+		{
+			String problem = entry.getKey().substring(0, entry.getKey().lastIndexOf('.'));
+			String metric = entry.getKey().substring(problem.length() + 1);
+			List<Double> values = entry.getValue();
+			List<Double> baselineValues = parseSamples(baseline.getProperty(entry.getKey()));
+			
+			if (!problem.equals(previousProblem))
+			{
+				table.addDelimiter();
+				previousProblem = problem;
+			}
+			
+			String pValue = "";
+			String flag = "";
+			
+			if (values.size() >= 2 && baselineValues != null && baselineValues.size() >= 2)
+			{
+				double p = Statistics.welchGreaterPValue(values, baselineValues);
+				pValue = P_VALUE_FORMAT.format(p);
+				
+				if (p < SIGNIFICANCE_LEVEL)
+				{
+					flag = (metric.equals("objective") ? "WORSE" : "SLOWER");
+					significant++;
+				}
+			}
+			
+			table.addRow
+			(
+				problem,
+				METRIC_NAMES[Arrays.asList(METRICS).indexOf(metric)],
+				values.size(),
+				VALUE_FORMAT.format(Statistics.mean(values)),
+				VALUE_FORMAT.format(Statistics.stdev(values)),
+				VALUE_FORMAT.format(Statistics.min(values)),
+				VALUE_FORMAT.format(Statistics.max(values)),
+				(baselineValues == null ? "" : VALUE_FORMAT.format(Statistics.mean(baselineValues))),
+				(baselineValues == null ? "" : VALUE_FORMAT.format(Statistics.stdev(baselineValues))),
+				pValue,
+				flag
+			);
+		}
+		
+		return table + (baseline.isEmpty() ? "" : "\n" + significant + " metric(s) are significantly worse than the baseline (p < " + SIGNIFICANCE_LEVEL + ")");
+	}
+	
+	// Every sample is kept (comma separated), as the t-test needs the variance of the baseline as well as its mean
+	private Properties toProperties()
+	{
+		Properties properties = new Properties();
+		
+		for (Map.Entry<String, List<Double>> entry : samples.entrySet())
+		{
+			StringBuilder values = new StringBuilder();
+			
+			for (double value : entry.getValue())
+			{
+				values.append(values.length() == 0 ? "" : ",").append(value);
+			}
+			
+			properties.setProperty(entry.getKey(), values.toString());
+		}
+		
+		return properties;
+	}
+	
+	private static List<Double> parseSamples(String values)
+	{
+		if (values == null)
+		{
+			return null;
+		}
+		
+		List<Double> samples = new ArrayList<>();
+		
+		for (String value : values.split(","))
+		{
+			samples.add(Double.parseDouble(value));
+		}
+		
+		return samples;
+	}
+}
@@ -6,7 +6,6 @@ import solvers.GurobiSolver;
 public class GapLogger implements GurobiCallback
 {
 	private final int reportInterval;
-	private double lastReportTime = 0;
 	private int bestDist = Integer.MAX_VALUE;
 
 	public GapLogger(int reportInterval)
@@ -16,27 +15,36 @@ public class GapLogger implements GurobiCallback
 		this.reportInterval = reportInterval;
 	}
 	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIP};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return reportInterval;
+	}
+	
 	@Override
 	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
 	{
-		if (callbackCoordinator.getWhere() == GRB.Callback.MIP)
+		double currentTime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+		double currentResult = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
+		double currentBound = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND);
+
+		if (currentTime <= reportInterval || currentResult >= GRB.INFINITY || currentBound <= -GRB.INFINITY)
 		{
-			double currentTime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+			return;		// The first report waits one interval, and there is nothing to report without both a solution and a bound
+		}
+
+		int distToOpt = (int) Math.ceil(currentResult) - (int) Math.floor(currentBound);	// Ceil and floor for pessimism
 
-			if ((lastReportTime + reportInterval) < currentTime)
-			{
-				int currentResult = (int) Math.ceil(callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST));	// Ceil for pessimism
-				int currentBound = (int) Math.floor(callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND));	// Floor for pessimism
-				int distToOpt = currentResult - currentBound;
-				
-				if (distToOpt < bestDist)
-				{
-					System.out.println("Status: Current solution is no more than " + distToOpt + " points from optimality (" + Math.round(currentTime) + "s used)");
-					bestDist = distToOpt;
-				}
-				
-				lastReportTime = currentTime;
-			}
+		if (distToOpt < bestDist)
+		{
+			System.out.println("Status: Current solution is no more than " + distToOpt + " points from optimality (" + Math.round(currentTime) + "s used)");
+			bestDist = distToOpt;
 		}
 	}
 }
\ No newline at end of file
@@ -4,5 +4,8 @@ import solvers.GurobiSolver;
 
 public interface GurobiCallback
 {
+	int[] events();			// The callback events (GRB.Callback.MIP, GRB.Callback.MIPSOL, ...) this callback should be called for
+	double minInterval();	// The minimum number of seconds between two calls for the same event. Events occurring sooner are skipped for this callback.
+	
 	void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator);
-}
\ No newline at end of file
+}
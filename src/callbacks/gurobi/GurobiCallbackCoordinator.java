@@ -1,17 +1,35 @@
 package callbacks.gurobi;
 
+import gurobi.GRB;
 import gurobi.GRBCallback;
 import gurobi.GRBException;
 import gurobi.GRBVar;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import solvers.GurobiSolver;
+import solvers.ValueSnapshot;
 
-// We wrap callbacks in an instance of this coordinator class because Gurobi only accepts a single callback
+// We wrap callbacks in an instance of this coordinator class because Gurobi only accepts a single callback.
+// Each callback is only called for the events it has asked for, and no more often than its minimum interval. Callbacks must be added before solving.
 public class GurobiCallbackCoordinator extends GRBCallback
 {
+	private static final int EVENT_COUNT = 16;		// Callback events are identified by small integers (GRB.Callback.POLLING = 0, GRB.Callback.PRESOLVE = 1, ...)
+	
 	public final GurobiSolver solver;
 	public final List<GurobiCallback> callbacks = new LinkedList<>();
+	private ValueSnapshot incumbent = null;
+	
+	// Dispatch tables indexed by event, built when the first event occurs
+	private GurobiCallback[][] subscribers = null;
+	private long[][] minIntervals = null;		// In nanoseconds
+	private long[][] lastCalls = null;			// System.nanoTime() of the last call, or Long.MIN_VALUE if never called
+	
+	// Frequently requested information, fetched at most once per event for all callbacks. NaN until fetched.
+	private double runtime = Double.NaN;
+	private double mipObjBest = Double.NaN;
+	private double mipObjBound = Double.NaN;
 
 	public GurobiCallbackCoordinator(GurobiSolver solver)
 	{
@@ -21,9 +39,77 @@ public class GurobiCallbackCoordinator extends GRBCallback
 	@Override
 	protected void callback()
 	{
+		if (subscribers == null)
+		{
+			buildDispatchTables();
+		}
+		
+		if (where < 0 || where >= EVENT_COUNT || subscribers[where].length == 0)
+		{
+			return;
+		}
+		
+		runtime = Double.NaN;
+		mipObjBest = Double.NaN;
+		mipObjBound = Double.NaN;
+		
+		// Take all values of a new incumbent at once, so callbacks (and the solver's varValue()) don't need a call into Gurobi for every variable
+		if (where == GRB.Callback.MIPSOL)
+		{
+			incumbent = solver.snapshot(getSolution(solver.allVars()));
+		}
+		
+		GurobiCallback[] eventSubscribers = subscribers[where];
+		long[] eventLastCalls = lastCalls[where];
+		long now = System.nanoTime();
+		
+		for (int i = 0; i < eventSubscribers.length; i++)
+		{
+			if (eventLastCalls[i] == Long.MIN_VALUE || (now - eventLastCalls[i]) >= minIntervals[where][i])
+			{
+				eventLastCalls[i] = now;
+				eventSubscribers[i].callback(solver, this);
+			}
+		}
+	}
+	
+	private void buildDispatchTables()
+	{
+		List<List<GurobiCallback>> eventSubscribers = new ArrayList<>();
+		
+		for (int event = 0; event < EVENT_COUNT; event++)
+		{
+			eventSubscribers.add(new ArrayList<GurobiCallback>());
+		}
+		
 		for (GurobiCallback callback : callbacks)
 		{
-			callback.callback(solver, this);
+			for (int event : callback.events())
+			{
+				if (event < 0 || event >= EVENT_COUNT)
+				{
+					throw new IllegalArgumentException("Callback " + callback.getClass().getSimpleName() + " asks for unknown callback event " + event);
+				}
+				
+				eventSubscribers.get(event).add(callback);
+			}
+		}
+		
+		subscribers = new GurobiCallback[EVENT_COUNT][];
+		minIntervals = new long[EVENT_COUNT][];
+		lastCalls = new long[EVENT_COUNT][];
+		
+		for (int event = 0; event < EVENT_COUNT; event++)
+		{
+			subscribers[event] = eventSubscribers.get(event).toArray(new GurobiCallback[0]);
+			minIntervals[event] = new long[subscribers[event].length];
+			lastCalls[event] = new long[subscribers[event].length];
+			Arrays.fill(lastCalls[event], Long.MIN_VALUE);
+			
+			for (int i = 0; i < subscribers[event].length; i++)
+			{
+				minIntervals[event][i] = (long) (subscribers[event][i].minInterval() * 1e9);
+			}
 		}
 	}
 	
@@ -37,7 +123,32 @@ public class GurobiCallbackCoordinator extends GRBCallback
 	{
 		try
 		{
-			return super.getDoubleInfo(infoID);
+			switch (infoID)
+			{
+				case GRB.Callback.RUNTIME:
+					if (Double.isNaN(runtime))
+					{
+						runtime = super.getDoubleInfo(infoID);
+					}
+					
+					return runtime;
+				case GRB.Callback.MIP_OBJBST:
+					if (Double.isNaN(mipObjBest))
+					{
+						mipObjBest = super.getDoubleInfo(infoID);
+					}
+					
+					return mipObjBest;
+				case GRB.Callback.MIP_OBJBND:
+					if (Double.isNaN(mipObjBound))
+					{
+						mipObjBound = super.getDoubleInfo(infoID);
+					}
+					
+					return mipObjBound;
+				default:
+					return super.getDoubleInfo(infoID);
+			}
 		}
 		catch (GRBException ex)
 		{
@@ -51,6 +162,44 @@ public class GurobiCallbackCoordinator extends GRBCallback
 		super.abort();
 	}
 
+	// Lets callbacks holding resources (like threads) release them once solving has finished
+	public void solveFinished()
+	{
+		for (GurobiCallback callback : callbacks)
+		{
+			if (callback instanceof AutoCloseable)
+			{
+				try
+				{
+					((AutoCloseable) callback).close();
+				}
+				catch (Exception ex)
+				{
+					throw new RuntimeException(ex);
+				}
+			}
+		}
+	}
+	
+	// Returns the values of the newest incumbent found so far, or null if no incumbent has been found yet
+	public ValueSnapshot incumbent()
+	{
+		return incumbent;
+	}
+
+	@Override
+	public double[] getSolution(GRBVar[] vars)
+	{
+		try
+		{
+			return super.getSolution(vars);
+		}
+		catch (GRBException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
 	@Override
 	public double getSolution(GRBVar v)
 	{
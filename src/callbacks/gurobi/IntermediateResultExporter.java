@@ -2,15 +2,21 @@ package callbacks.gurobi;
 
 import exporters.Exporter;
 import gurobi.GRB;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import model.Model;
+import model.Solution;
 import solvers.GurobiSolver;
 
-public class IntermediateResultExporter implements GurobiCallback
+// Exports incumbents as they are found. The export itself runs on a background thread, so the solver never waits for rendering or disk.
+// Only the newest incumbent is kept waiting for the export thread; incumbents replaced before the thread gets to them are never exported.
+public class IntermediateResultExporter implements GurobiCallback, AutoCloseable
 {
-	private static final int EXPORT_INTERVAL = 1000;
 	private final Model model;
 	private final Exporter exporter;
-	private Long lastExport = null;
+	private final AtomicReference<Solution> pending = new AtomicReference<>();
+	private volatile boolean closed = false;
+	private Thread worker = null;
 	
 	public IntermediateResultExporter(Model model, Exporter exporter)
 	{
@@ -18,17 +24,44 @@ public class IntermediateResultExporter implements GurobiCallback
 		this.exporter = exporter;
 	}
 	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIPSOL};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return 0;	// Bursts of incumbents are coalesced by the export thread instead
+	}
+	
 	@Override
 	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
 	{
 		try
 		{
-			if (callbackCoordinator.getWhere() == GRB.Callback.MIPSOL)
+			if (!closed)
 			{
-				if (lastExport == null || (System.currentTimeMillis() - lastExport > EXPORT_INTERVAL))
+				// The scheduling map is read from the incumbent snapshot of the coordinator, so this is cheap. The solution is never changed afterwards.
+				pending.set(new Solution(model, solver.schedulingMap()));
+				
+				if (worker == null)
 				{
-					exporter.export(model, solver, false);
-					lastExport = System.currentTimeMillis();
+					worker = new Thread(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							exportLoop();
+						}
+					}, getClass().getSimpleName() + " " + model.modelName);
+					worker.setDaemon(true);
+					worker.start();
+				}
+				else
+				{
+					LockSupport.unpark(worker);
 				}
 			}
 		}
@@ -37,4 +70,49 @@ public class IntermediateResultExporter implements GurobiCallback
 			ex.printStackTrace();	// Exceptions will be eaten raw and silently by Gurobi, so print them instead
 		}
 	}
-}
\ No newline at end of file
+	
+	// Stops the export thread, discarding any incumbent not exported yet, and waits for an export in progress to finish.
+	// Called by the solver when solving has finished, so a final export made afterwards is never overwritten by an intermediate one.
+	@Override
+	public void close()
+	{
+		closed = true;
+		
+		if (worker != null)
+		{
+			LockSupport.unpark(worker);
+			
+			try
+			{
+				worker.join();
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private void exportLoop()
+	{
+		while (!closed)
+		{
+			Solution solution = pending.getAndSet(null);
+			
+			if (solution == null)
+			{
+				LockSupport.park(this);
+				continue;
+			}
+			
+			try
+			{
+				exporter.export(model, solution, false);
+			}
+			catch (RuntimeException ex)
+			{
+				ex.printStackTrace();
+			}
+		}
+	}
+}
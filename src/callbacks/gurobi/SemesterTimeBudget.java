@@ -0,0 +1,169 @@
+package callbacks.gurobi;
+
+import gurobi.GRB;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import model.Model;
+import model.Session;
+import solvers.GurobiSolver;
+import util.Tools;
+
+// Shares a single wall-clock budget between all the weeks of a semester. Each week is given an allowance proportional to its size (measured in enrollments)
+// compared to the weeks not yet solved. As the allowance is recalculated from the time actually left when a week starts, seconds not used by easy weeks
+// automatically go to the harder weeks following them.
+public class SemesterTimeBudget
+{
+	private static final int MIN_WEEK_SECONDS = 10;				// Never give a week less than this, even if the budget is exhausted. We still need a solution for it.
+	private static final double STAGNATION_FRACTION = 0.5;		// Stop a week early if neither the incumbent nor the bound has improved for this fraction of its allowance
+	private static final double PROGRESS_FRACTION = 0.2;		// A week is still making progress if its gap improved during this last fraction of its allowance
+	private static final double EXTENSION_FRACTION = 0.25;		// Extend the allowance of a week still making progress by this fraction of its original allowance...
+	private static final double RESERVED_FRACTION = 0.75;		// ...as long as the remaining weeks keep at least this fraction of their proportional share
+
+	private final long deadline;
+	private final Map<Model, Integer> remainingWeights = new IdentityHashMap<>();
+	private int remainingWeightTotal = 0;
+
+	public SemesterTimeBudget(int secondsLimit, List<Model> models)
+	{
+		this.deadline = System.currentTimeMillis() + secondsLimit * 1000L;
+
+		for (Model model : models)
+		{
+			int weight = weight(model);
+			remainingWeights.put(model, weight);
+			remainingWeightTotal += weight;
+		}
+
+		System.out.println(getClass().getSimpleName() + ": " + Tools.timeString(secondsLimit) + " shared between " + models.size() + " weeks with " + remainingWeightTotal + " enrollments in total");
+	}
+
+	// Returns a callback ending the solve of the given model once it has used its share of the budget. Call weekFinished() when the solve is done.
+	public GurobiCallback weekStarted(Model model)
+	{
+		Integer weight = remainingWeights.get(model);
+
+		if (weight == null)
+		{
+			throw new IllegalArgumentException("Model " + model.modelName + " is not part of this time budget or has already been solved");
+		}
+
+		double secondsLeft = secondsLeft();
+		double allowance = Math.max(MIN_WEEK_SECONDS, secondsLeft * weight / remainingWeightTotal);
+		double extensionLimit = Math.max(allowance, secondsLeft - (secondsLeft - allowance) * RESERVED_FRACTION);
+
+		System.out.println(getClass().getSimpleName() + ": " + model.modelName + " (" + weight + " of " + remainingWeightTotal + " remaining enrollments) is allowed " + Tools.timeString(Math.round(allowance)) + " of the " + Tools.timeString(Math.round(secondsLeft)) + " left");
+
+		return new WeekFinisher(model, allowance, extensionLimit);
+	}
+
+	public void weekFinished(Model model)
+	{
+		Integer weight = remainingWeights.remove(model);
+
+		if (weight != null)
+		{
+			remainingWeightTotal -= weight;
+		}
+
+		System.out.println(getClass().getSimpleName() + ": " + model.modelName + " finished. " + Tools.timeString(Math.round(secondsLeft())) + " left for " + remainingWeights.size() + " remaining weeks");
+	}
+
+	// Passes the share of a week that turned out not to need solving on to the remaining weeks
+	public void weekSkipped(Model model)
+	{
+		Integer weight = remainingWeights.remove(model);
+
+		if (weight != null)
+		{
+			remainingWeightTotal -= weight;
+		}
+	}
+
+	private double secondsLeft()
+	{
+		return Math.max(0, (deadline - System.currentTimeMillis()) / 1000D);
+	}
+
+	private static int weight(Model model)
+	{
+		int enrollments = 0;
+
+		for (Session session : model.sessions())
+		{
+			enrollments += session.persons.size();
+		}
+
+		return Math.max(1, enrollments);
+	}
+
+	private class WeekFinisher implements GurobiCallback
+	{
+		private final Model model;
+		private final double initialAllowance;
+		private final double extensionLimit;
+		private double allowance;
+		private double lastResult = GRB.INFINITY;
+		private double lastBound = -GRB.INFINITY;
+		private double lastProgressTime = 0;
+
+		public WeekFinisher(Model model, double allowance, double extensionLimit)
+		{
+			this.model = model;
+			this.initialAllowance = allowance;
+			this.allowance = allowance;
+			this.extensionLimit = extensionLimit;
+		}
+
+		@Override
+		public int[] events()
+		{
+			return new int[] {GRB.Callback.MIP};
+		}
+
+		@Override
+		public double minInterval()
+		{
+			return 1;
+		}
+
+		@Override
+		public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
+		{
+			double currentResult = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
+			double currentBound = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND);
+			double currentTime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+
+			if (currentResult < lastResult || currentBound > lastBound)
+			{
+				lastResult = Math.min(lastResult, currentResult);
+				lastBound = Math.max(lastBound, currentBound);
+				lastProgressTime = currentTime;
+			}
+
+			if (currentResult >= GRB.INFINITY)
+			{
+				return;		// Never stop before we have a solution at all
+			}
+
+			if ((lastProgressTime + allowance * STAGNATION_FRACTION) < currentTime)
+			{
+				System.out.println(SemesterTimeBudget.class.getSimpleName() + ": " + model.modelName + " made no progress during the last " + Math.round(allowance * STAGNATION_FRACTION) + " seconds. Stopping and returning " + Math.round(allowance - currentTime) + " seconds to the budget...");
+				callbackCoordinator.abort();
+			}
+			else if (allowance < currentTime)
+			{
+				if ((lastProgressTime + allowance * PROGRESS_FRACTION) >= currentTime && (allowance + initialAllowance * EXTENSION_FRACTION) <= extensionLimit)
+				{
+					allowance += initialAllowance * EXTENSION_FRACTION;
+					System.out.println(SemesterTimeBudget.class.getSimpleName() + ": " + model.modelName + " is still closing its gap (" + Math.round(currentResult - currentBound) + " points left). Extending its allowance to " + Tools.timeString(Math.round(allowance)));
+				}
+				else
+				{
+					System.out.println(SemesterTimeBudget.class.getSimpleName() + ": " + model.modelName + " used its allowance of " + Tools.timeString(Math.round(allowance)) + " with " + Math.round(currentResult - currentBound) + " points left to optimality. Stopping...");
+					callbackCoordinator.abort();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package callbacks.gurobi;
+
+import gurobi.GRB;
+import solvers.GurobiSolver;
+
+// Records milestones of a solve for benchmarking purposes: time to first solution, root bound, node count and time to reach a target gap.
+// Optionally ends the solve once the target gap is reached or the time limit is exceeded.
+public class SolveRecorder implements GurobiCallback
+{
+	private final double targetGap;
+	private final boolean finishAtTargetGap;
+	private final double timeLimit;
+	
+	private Double firstSolutionTime = null;
+	private Double targetGapTime = null;
+	private double rootBound = -GRB.INFINITY;
+	private double bestResult = GRB.INFINITY;
+	private double bestBound = -GRB.INFINITY;
+	private double nodeCount = 0;
+	private double runtime = 0;
+
+	public SolveRecorder(double targetGap, boolean finishAtTargetGap, double secondsLimit)
+	{
+		this.targetGap = targetGap;
+		this.finishAtTargetGap = finishAtTargetGap;
+		this.timeLimit = secondsLimit;
+	}
+	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIP, GRB.Callback.MIPSOL};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return 0;	// Every event counts when measuring times
+	}
+	
+	@Override
+	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
+	{
+		if (callbackCoordinator.getWhere() == GRB.Callback.MIPSOL)
+		{
+			runtime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+			
+			if (firstSolutionTime == null)
+			{
+				firstSolutionTime = runtime;
+			}
+			
+			update(callbackCoordinator, callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_OBJBST), callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_OBJBND));
+		}
+		else if (callbackCoordinator.getWhere() == GRB.Callback.MIP)
+		{
+			runtime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+			nodeCount = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_NODCNT);
+			double currentBound = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND);
+			
+			if (nodeCount == 0)
+			{
+				rootBound = currentBound;	// The last bound reported before branching starts is the root bound
+			}
+			
+			update(callbackCoordinator, callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST), currentBound);
+		}
+	}
+	
+	private void update(GurobiCallbackCoordinator callbackCoordinator, double currentResult, double currentBound)
+	{
+		bestResult = Math.min(bestResult, currentResult);
+		bestBound = Math.max(bestBound, currentBound);
+		
+		if (targetGapTime == null && gap() <= targetGap)
+		{
+			targetGapTime = runtime;
+			
+			if (finishAtTargetGap)
+			{
+				callbackCoordinator.abort();
+			}
+		}
+		
+		if (runtime > timeLimit)
+		{
+			callbackCoordinator.abort();
+		}
+	}
+	
+	// Relative gap, defined the same way as Gurobi does
+	public double gap()
+	{
+		return TerminationPolicies.relativeGap(bestResult, bestBound);
+	}
+	
+	public Double firstSolutionTime()
+	{
+		return firstSolutionTime;
+	}
+	
+	public Double targetGapTime()
+	{
+		return targetGapTime;
+	}
+	
+	public double rootBound()
+	{
+		return rootBound;
+	}
+	
+	public double bestResult()
+	{
+		return bestResult;
+	}
+	
+	public double bestBound()
+	{
+		return bestBound;
+	}
+	
+	public double nodeCount()
+	{
+		return nodeCount;
+	}
+	
+	public double runtime()
+	{
+		return runtime;
+	}
+}
@@ -16,25 +16,34 @@ public class StagnationFinisher implements GurobiCallback
 		timeLimit = secondsLimit;
 	}
 	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIP};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return 1;
+	}
+	
 	@Override
 	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
 	{
-		if (callbackCoordinator.getWhere() == GRB.Callback.MIP)
-		{
-			double currentResult = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
-			double currentTime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+		double currentResult = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
+		double currentTime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
 
-			if (currentResult < lastResult)
-			{								
-				lastResult = currentResult;
-				lastResultTime = currentTime;
-			}
+		if (currentResult < lastResult)
+		{								
+			lastResult = currentResult;
+			lastResultTime = currentTime;
+		}
 
-			if ((lastResultTime + timeLimit) < currentTime)
-			{
-				System.out.println(getClass().getSimpleName() + ": No better solution found during the last " + timeLimit + " seconds. Stopping...");
-				callbackCoordinator.abort();
-			}
+		if ((lastResultTime + timeLimit) < currentTime)
+		{
+			System.out.println(getClass().getSimpleName() + ": No better solution found during the last " + timeLimit + " seconds. Stopping...");
+			callbackCoordinator.abort();
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package callbacks.gurobi;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gurobi.GRB;
+import solvers.GurobiSolver;
+import util.JsonLinesSink;
+
+// Emits the progress of the solve to a telemetry sink: a "progress" event (incumbent, bound, node count and gap) at most once per
+// interval during the MIP search, and a "solution" event for every incumbent found
+public class TelemetryLogger implements GurobiCallback
+{
+	private final JsonLinesSink sink;
+	private final double interval;
+	private double lastProgressTime = -GRB.INFINITY;
+	
+	public TelemetryLogger(JsonLinesSink sink, double secondsInterval)
+	{
+		this.sink = sink;
+		this.interval = secondsInterval;
+	}
+	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIP, GRB.Callback.MIPSOL};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return 0;	// Progress events are throttled below, as solution events should never be skipped
+	}
+	
+	@Override
+	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
+	{
+		double runtime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+		
+		if (callbackCoordinator.getWhere() == GRB.Callback.MIPSOL)
+		{
+			ObjectNode event = sink.event("solution");
+			event.put("runtime", runtime);
+			event.put("objective", callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_OBJ));
+			event.put("incumbent", callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_OBJBST));
+			event.put("bound", callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_OBJBND));
+			event.put("nodes", callbackCoordinator.getDoubleInfo(GRB.Callback.MIPSOL_NODCNT));
+			sink.emit(event);
+		}
+		else if (runtime >= lastProgressTime + interval)
+		{
+			double incumbent = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
+			double bound = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND);
+			
+			ObjectNode event = sink.event("progress");
+			event.put("runtime", runtime);
+			
+			if (incumbent < GRB.INFINITY)
+			{
+				event.put("incumbent", incumbent);
+				event.put("gap", TerminationPolicies.relativeGap(incumbent, bound));
+			}
+			
+			event.put("bound", bound);
+			event.put("nodes", callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_NODCNT));
+			sink.emit(event);
+			
+			lastProgressTime = runtime;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package callbacks.gurobi;
+
+import gurobi.GRB;
+import solvers.GurobiSolver;
+
+// Ends the solve as soon as the given termination policy is met
+public class TerminationFinisher implements GurobiCallback
+{
+	private static final double CHECK_INTERVAL = 1;		// Seconds
+	
+	private final TerminationPolicy policy;
+
+	public TerminationFinisher(TerminationPolicy policy)
+	{
+		this.policy = policy;
+	}
+	
+	@Override
+	public int[] events()
+	{
+		return new int[] {GRB.Callback.MIP};
+	}
+	
+	@Override
+	public double minInterval()
+	{
+		return CHECK_INTERVAL;
+	}
+	
+	@Override
+	public void callback(GurobiSolver solver, GurobiCallbackCoordinator callbackCoordinator)
+	{
+		double runtime = callbackCoordinator.getDoubleInfo(GRB.Callback.RUNTIME);
+		double incumbent = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBST);
+		double bound = callbackCoordinator.getDoubleInfo(GRB.Callback.MIP_OBJBND);
+		
+		if (policy.isMet(solver, runtime, incumbent, bound))
+		{
+			System.out.println(getClass().getSimpleName() + ": " + policy + " met after " + Math.round(runtime) + " seconds with " + Math.round(incumbent - bound) + " points left to optimality. Stopping...");
+			callbackCoordinator.abort();
+		}
+	}
+}
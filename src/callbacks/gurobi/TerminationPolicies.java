@@ -0,0 +1,205 @@
+package callbacks.gurobi;
+
+import gurobi.GRB;
+import java.util.Arrays;
+import java.util.LinkedList;
+import solvers.GurobiSolver;
+
+// The built-in termination policies. Combine them with all() and any(), for example
+//     any(absoluteGapBelowGranularity(), all(gapImprovementBelow(0.001, 300), deadline(...)))
+public class TerminationPolicies
+{
+	private TerminationPolicies()
+	{
+	}
+	
+	// Met when the distance between incumbent and bound is below the given number of points
+	public static TerminationPolicy absoluteGapBelow(final double points)
+	{
+		return new TerminationPolicy()
+		{
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				return (incumbent < GRB.INFINITY && (incumbent - bound) < points);
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Absolute gap below " + points;
+			}
+		};
+	}
+	
+	// Met when the distance between incumbent and bound is below the smallest step the objective value can take, which means the incumbent is optimal.
+	// Never met for models whose objective has no such step (see GurobiSolver.objectiveGranularity()).
+	public static TerminationPolicy absoluteGapBelowGranularity()
+	{
+		return new TerminationPolicy()
+		{
+			private Double granularity = null;
+			
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				if (granularity == null)
+				{
+					granularity = solver.objectiveGranularity();
+				}
+				
+				return (granularity > 0 && incumbent < GRB.INFINITY && (incumbent - bound) < granularity);
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Absolute gap below objective granularity" + (granularity == null ? "" : " (" + granularity + ")");
+			}
+		};
+	}
+	
+	// Met when the distance between incumbent and bound is below the cheapest penalty of the model. Less than one unit of the cheapest penalty can be gained by going on.
+	public static TerminationPolicy absoluteGapBelowSmallestPenalty()
+	{
+		return new TerminationPolicy()
+		{
+			private Double smallestPenalty = null;
+			
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				if (smallestPenalty == null)
+				{
+					smallestPenalty = solver.smallestPenalty();
+				}
+				
+				return (smallestPenalty > 0 && incumbent < GRB.INFINITY && (incumbent - bound) < smallestPenalty);
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Absolute gap below smallest penalty" + (smallestPenalty == null ? "" : " (" + smallestPenalty + ")");
+			}
+		};
+	}
+	
+	// Met when the relative gap has improved less than the given amount (0.01 = 1 percentage point) during the last given number of seconds
+	public static TerminationPolicy gapImprovementBelow(final double minImprovement, final double windowSeconds)
+	{
+		return new TerminationPolicy()
+		{
+			private final LinkedList<double[]> samples = new LinkedList<>();	// {runtime, relative gap}, oldest first
+			
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				if (incumbent >= GRB.INFINITY)
+				{
+					return false;
+				}
+				
+				double gap = relativeGap(incumbent, bound);
+				samples.addLast(new double[] {runtime, gap});
+				
+				// Keep only the newest sample at least a window old as the reference for the window
+				while (samples.size() >= 2 && samples.get(1)[0] <= runtime - windowSeconds)
+				{
+					samples.removeFirst();
+				}
+				
+				double[] reference = samples.getFirst();
+				return (reference[0] <= runtime - windowSeconds && (reference[1] - gap) < minImprovement);
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Gap improvement below " + minImprovement + " in " + windowSeconds + " seconds";
+			}
+		};
+	}
+	
+	// Met once the wall clock passes the given time (as given by System.currentTimeMillis()), provided a solution has been found
+	public static TerminationPolicy deadline(final long timeMillis)
+	{
+		return new TerminationPolicy()
+		{
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				return (incumbent < GRB.INFINITY && System.currentTimeMillis() >= timeMillis);
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Deadline";
+			}
+		};
+	}
+	
+	// Met when all given policies are met. Every policy is asked every time, so stateful policies see all progress.
+	public static TerminationPolicy all(final TerminationPolicy... policies)
+	{
+		return new TerminationPolicy()
+		{
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				boolean met = true;
+				
+				for (TerminationPolicy policy : policies)
+				{
+					met &= policy.isMet(solver, runtime, incumbent, bound);
+				}
+				
+				return met;
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "All of " + Arrays.toString(policies);
+			}
+		};
+	}
+	
+	// Met when any of the given policies is met. Every policy is asked every time, so stateful policies see all progress.
+	public static TerminationPolicy any(final TerminationPolicy... policies)
+	{
+		return new TerminationPolicy()
+		{
+			@Override
+			public boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound)
+			{
+				boolean met = false;
+				
+				for (TerminationPolicy policy : policies)
+				{
+					met |= policy.isMet(solver, runtime, incumbent, bound);
+				}
+				
+				return met;
+			}
+			
+			@Override
+			public String toString()
+			{
+				return "Any of " + Arrays.toString(policies);
+			}
+		};
+	}
+	
+	// Relative gap as defined by Gurobi
+	public static double relativeGap(double incumbent, double bound)
+	{
+		if (incumbent >= GRB.INFINITY)
+		{
+			return GRB.INFINITY;
+		}
+		
+		return (incumbent == bound ? 0 : Math.abs(incumbent - bound) / Math.abs(incumbent));
+	}
+}
@@ -0,0 +1,11 @@
+package callbacks.gurobi;
+
+import solvers.GurobiSolver;
+
+// A rule deciding when a solve has come far enough to be ended. Policies are asked regularly during the MIP search by TerminationFinisher
+// and may keep state between calls. See TerminationPolicies for the built-in policies and for combining them.
+public interface TerminationPolicy
+{
+	// incumbent is GRB.INFINITY as long as no solution has been found
+	boolean isMet(GurobiSolver solver, double runtime, double incumbent, double bound);
+}
@@ -2,14 +2,16 @@ package constraints;
 
 import gurobi.GRBLinExpr;
 import gurobi.GRBVar;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import model.Day;
 import model.Session;
 import model.Model;
 import model.Person;
-import org.javatuples.Triplet;
-import solvers.GurobiSolver;
-import util.GeputHashMap;
+import solvers.Solver;
+import util.LongIntHashMap;
 import util.Tools;
 
 // NOTE: This constraint only affects the case in which the number of sessions for a given user for a given course is <= DESIRED_WEEK_LENGTH.
@@ -17,106 +19,99 @@ import util.Tools;
 public class AvoidNoCourseSpreading extends Constraint
 {
 	private static final int DESIRED_WEEK_LENGTH = 5;	// Base break calculations on a desired week this long
+	private static final int MAX_BREAK_LENGTH = 2;		// It makes little sense to schedule more than 2 days break on a 7-day week, because any weekend break is only 2 days anyway
 	
-	private GRBVar[] spreadPenalties;
+	// TRIGGER:		One big-M style "trigger" row per session and day pushing penalties into a penalty variable per session. Compact, but with a very weak LP relaxation.
+	// INDICATOR:	A "too close" indicator per session pair and break length, based on whether the sessions are scheduled on specific days. Larger, but with a much
+	//				tighter LP relaxation. Best combined with the day indicators of the solver.
+	public enum Formulation
+	{
+		TRIGGER,
+		INDICATOR
+	}
+	
+	private final Formulation formulation;
 	private final int maxPenalty;
+	private PairPenalties pairPenalties;
+	
+	private GRBVar[] spreadPenalties;		// TRIGGER: Penalty per session
+	private GRBVar[][] closeIndicators;		// INDICATOR: Whether each session pair is scheduled with each break length (null where there is no penalty)
+
+	public AvoidNoCourseSpreading(Solver solver, Model model, int maxPenalty)
+	{
+		this(solver, model, maxPenalty, Formulation.TRIGGER);
+	}
 
-	public AvoidNoCourseSpreading(GurobiSolver solver, Model model, int maxPenalty)
+	public AvoidNoCourseSpreading(Solver solver, Model model, int maxPenalty, Formulation formulation)
 	{
 		super(solver, model);
 		
 		this.maxPenalty = maxPenalty;
+		this.formulation = formulation;
 	}
 
 	@Override
 	public void addVariables()
 	{
+		// Create the penalties for scheduling specific sessions near each other
+		pairPenalties = new PairPenalties(model, maxPenalty);
+
+		if (formulation == Formulation.INDICATOR)
+		{
+			addIndicatorVariables();
+			return;
+		}
+		
 		// Allocate session penalty variables for each session for each day. These variables are to be minimized in the objective and represent the active penalties for scheduling sessions separated by too short breaks
 		spreadPenalties = new GRBVar[model.sessions().size()];
 		
-		for (Session session : model.sessions())
+		for (int s = 0; s < model.sessions().size(); s++)
 		{
-			spreadPenalties[model.indexOf(session)] = solver.addLinearVar(0, null, Tools.nameConcat(this, session));
+			spreadPenalties[s] = solver.addLinearVar(0, null, Tools.nameConcat(this, model.sessions().get(s)));
 		}
 	}
 
 	@Override
 	public void addConstraints()
 	{
-		// Create a session penalty map representing the penalty for scheduling specific sessions near each other
-		GeputHashMap<Triplet<Session, Session, Integer>, Double> penaltyMap = new GeputHashMap<>();	// <session 1>, <session 2>, <break length in days>, <penalty>
-		
-		for (Person person : model.persons())
+		if (formulation == Formulation.INDICATOR)
 		{
-			for (List<Session> sessionList : person.studentSessionsByCourse())
-			{
-				if (sessionList.size() == 1 || sessionList.size() > DESIRED_WEEK_LENGTH)
-				{
-					continue;
-				}
-				
-				// Determine desired length of breaks between sessions (in days).
-				// Gives the following breaks for a standard 5-day week (keep in mind that 0 day long breaks are not useless because several sessions during the same day always will be taken into account)
-				// 5 sessions: 4 breaks of 0 days
-				// 4 sessions: 3 breaks of 0 days
-				// 3 sessions: 2 breaks of 1 day
-				// 2 sessions: 1 break of 2 days
-				int breakDays = Math.max(0, DESIRED_WEEK_LENGTH - sessionList.size());
-				int breaks = sessionList.size() - 1;
-				int breakLength = Math.min(2, breakDays / breaks);									// It makes little sense to schedule more than 2 days break on a 7-day week, because any weekend break is only 2 days anyway
-				
-				// Distribute penalty linearly over the breaks
-				double penaltyPerDay = (double) (person.weight * maxPenalty) / (breakLength + 1);		// + 1 to include the day a session is scheduled as well
-				
-				// We then loop over every combination (not permutation) of two sessions for this course
-				for (int i = 0; i < sessionList.size() - 1; i++)
-				{
-					for (int j = i + 1; j < sessionList.size(); j++)
-					{
-						for (int b = 0; b <= breakLength; b++)
-						{
-							Triplet<Session, Session, Integer> mapKey = new Triplet<>(sessionList.get(i), sessionList.get(j), b);
-							double penalty = penaltyMap.geput(mapKey, 0D);
-							penalty += penaltyPerDay * ((breakLength + 1) - b);
-							penaltyMap.put(mapKey, penalty);
-						}
-					}
-				}
-			}
+			addIndicatorConstraints();
+			return;
 		}
+		
+		List<Session> sessions = model.sessions();
+		List<Day> days = model.days();
+		GRBVar[][] dayVars = dayVars();
 
 		// Setup penalty trigger constraints for each session and each day. The variable corresponding to the day a session is scheduled will receive a huge "trigger value",
 		// causing the penalties added to the contraint to overflow into the penalty variables. We set up this relationship later.
-		for (Day day : model.days())
+		for (int d = 0; d < days.size(); d++)
 		{
-			for (Session session : model.sessions())
+			for (int s = 0; s < sessions.size(); s++)
 			{
 				// Setup a penalty trigger expression. It will contain the penalties for scheduling other sessions in the days following this one.
 				// This is implemented (below) by multiplying penalties with corresponding assignment variables. In order to assure that the penalties only
 				// are active when the session is scheduled at this day, a large trigger factor is added to the assignment variables of the session for this day
 				GRBLinExpr penaltyTrigger = new GRBLinExpr();
 				
-				// Setup penalties
-				Double totalPenalty = 0D;
+				// Setup penalties. Only the sessions actually sharing a student with this one have any.
+				double totalPenalty = 0;
 				
-				for (Session otherSession : model.sessions())
+				for (int pair : pairPenalties.pairsStartingWith(s))
 				{
-					for (Day otherDay : model.days())
+					int otherSession = pairPenalties.second(pair);
+
+					for (int b = 0; b <= MAX_BREAK_LENGTH && d + b < days.size(); b++)
 					{
-						Double penalty = penaltyMap.get(new Triplet<>(session, otherSession, model.indexOf(otherDay) - model.indexOf(day)));
+						double penalty = pairPenalties.penalty(pair, b);
 						
-						if (penalty != null)		// If there is no penalty for this combination then skip it
+						if (penalty > 0)		// If there is no penalty for this combination then skip it
 						{
 							totalPenalty += penalty;
 							
-							// Add trigger weight
-							for (GRBVar var : solver.assignVars(day, null, session))
-							{
-								penaltyTrigger.addTerm(penalty, var);
-							}
-							
 							// Add penalty
-							for (GRBVar var : solver.assignVars(otherDay, null, otherSession))
+							for (GRBVar var : dayVars[otherSession * days.size() + d + b])
 							{
 								penaltyTrigger.addTerm(penalty, var);
 							}
@@ -126,13 +121,19 @@ public class AvoidNoCourseSpreading extends Constraint
 
 				if (totalPenalty > 0)				// Don't add constraint if there are no penalties anyway
 				{
+					// Add trigger weight. This is the sum of all the penalties above.
+					for (GRBVar var : dayVars[s * days.size() + d])
+					{
+						penaltyTrigger.addTerm(totalPenalty, var);
+					}
+
 					// We now setup the constraint such that penalties are "pushed" from the penalty expression to the corresponding penalty variable when
 					// session are scheduled with noo little spreading
 					GRBLinExpr rhs = new GRBLinExpr();
 					rhs.addConstant(totalPenalty);
-					rhs.addTerm(1, spreadPenalties[model.indexOf(session)]);
+					rhs.addTerm(1, spreadPenalties[s]);
 
-					solver.addLessOrEqualsConstr(penaltyTrigger, rhs, Tools.nameConcat(this, session.course, session, day));
+					solver.addLessOrEqualsConstr(penaltyTrigger, rhs, Tools.nameConcat(this, sessions.get(s).course, sessions.get(s), days.get(d)));
 				}
 			}
 		}
@@ -141,9 +142,249 @@ public class AvoidNoCourseSpreading extends Constraint
 	@Override
 	public void addObjectives()
 	{
-		for (Session session : model.sessions())
+		if (formulation == Formulation.INDICATOR)
+		{
+			addIndicatorObjectives();
+			return;
+		}
+		
+		for (int s = 0; s < model.sessions().size(); s++)
+		{
+			solver.addObjective(1, spreadPenalties[s], (solver.objectiveNamesUsed() ? Tools.nameConcat(this, model.sessions().get(s)) : null));
+		}
+	}
+
+	private void addIndicatorVariables()
+	{
+		// Too-close indicators. They are pushed to 1 by the constraints when needed and are integral whenever the day indicators are, so we keep them continuous.
+		closeIndicators = new GRBVar[pairPenalties.size()][MAX_BREAK_LENGTH + 1];
+		
+		for (int pair = 0; pair < pairPenalties.size(); pair++)
+		{
+			for (int b = 0; b <= MAX_BREAK_LENGTH; b++)
+			{
+				if (pairPenalties.penalty(pair, b) > 0)
+				{
+					closeIndicators[pair][b] = solver.addLinearVar(0, 1D, Tools.nameConcat(this, "CLOSE", model.sessions().get(pairPenalties.first(pair)), model.sessions().get(pairPenalties.second(pair)), b));
+				}
+			}
+		}
+	}
+	
+	private void addIndicatorConstraints()
+	{
+		List<Session> sessions = model.sessions();
+		List<Day> days = model.days();
+		GRBVar[][] dayVars = dayVars();
+
+		// A pair is too close if the first session is scheduled on some day and the second session the given number of days later
+		for (int pair = 0; pair < pairPenalties.size(); pair++)
+		{
+			Session session = sessions.get(pairPenalties.first(pair));
+			Session otherSession = sessions.get(pairPenalties.second(pair));
+
+			for (int b = 0; b <= MAX_BREAK_LENGTH; b++)
+			{
+				if (closeIndicators[pair][b] == null)
+				{
+					continue;
+				}
+				
+				for (int d = 0; d + b < days.size(); d++)
+				{
+					GRBLinExpr lhs = new GRBLinExpr();
+					
+					for (GRBVar var : dayVars[pairPenalties.first(pair) * days.size() + d])
+					{
+						lhs.addTerm(1, var);
+					}
+					
+					for (GRBVar var : dayVars[pairPenalties.second(pair) * days.size() + d + b])
+					{
+						lhs.addTerm(1, var);
+					}
+					
+					lhs.addTerm(-1, closeIndicators[pair][b]);
+				
+					solver.addLessOrEqualsConstr(lhs, 1, Tools.nameConcat(this, "CLOSE", session.course, session, otherSession, b, days.get(d)));
+				}
+			}
+		}
+	}
+	
+	private void addIndicatorObjectives()
+	{
+		for (int pair = 0; pair < pairPenalties.size(); pair++)
+		{
+			for (int b = 0; b <= MAX_BREAK_LENGTH; b++)
+			{
+				if (closeIndicators[pair][b] != null)
+				{
+					solver.addObjective(pairPenalties.penalty(pair, b), closeIndicators[pair][b], (solver.objectiveNamesUsed() ? Tools.nameConcat(this, model.sessions().get(pairPenalties.first(pair)), model.sessions().get(pairPenalties.second(pair)), b) : null));
+				}
+			}
+		}
+	}
+
+	// The variables indicating whether each session (major) is scheduled on each day (minor), fetched once up front
+	private GRBVar[][] dayVars()
+	{
+		GRBVar[][] dayVars = new GRBVar[model.sessions().size() * model.days().size()][];
+		
+		for (int s = 0; s < model.sessions().size(); s++)
+		{
+			for (int d = 0; d < model.days().size(); d++)
+			{
+				dayVars[s * model.days().size() + d] = solver.dayVars(model.days().get(d), model.sessions().get(s));
+			}
+		}
+
+		return dayVars;
+	}
+
+	// The penalties for scheduling specific sessions near each other. Sessions are referred to by their index in the model and pairs are ordered.
+	// Only pairs of sessions actually sharing a student are stored. Also used when evaluating solutions outside of the solver.
+	public static class PairPenalties
+	{
+		private int[] firsts = new int[16];
+		private int[] seconds = new int[16];
+		private double[] penalties = new double[16 * (MAX_BREAK_LENGTH + 1)];	// Per pair and break length in days
+		private int size = 0;
+		private final int[][] pairsStartingWith;
+		private final int[][] pairsInvolving;
+
+		public PairPenalties(Model model, int maxPenalty)
+		{
+			List<Session> sessions = model.sessions();
+			Map<Session, Integer> sessionIndexes = new IdentityHashMap<>();
+
+			for (int s = 0; s < sessions.size(); s++)
+			{
+				sessionIndexes.put(sessions.get(s), s);
+			}
+
+			LongIntHashMap pairIndexes = new LongIntHashMap(sessions.size() * 4, -1);
+
+			for (Person person : model.persons())
+			{
+				for (List<Session> sessionList : person.studentSessionsByCourse())
+				{
+					if (sessionList.size() == 1 || sessionList.size() > DESIRED_WEEK_LENGTH)
+					{
+						continue;
+					}
+				
+					// Determine desired length of breaks between sessions (in days).
+					// Gives the following breaks for a standard 5-day week (keep in mind that 0 day long breaks are not useless because several sessions during the same day always will be taken into account)
+					// 5 sessions: 4 breaks of 0 days
+					// 4 sessions: 3 breaks of 0 days
+					// 3 sessions: 2 breaks of 1 day
+					// 2 sessions: 1 break of 2 days
+					int breakDays = Math.max(0, DESIRED_WEEK_LENGTH - sessionList.size());
+					int breaks = sessionList.size() - 1;
+					int breakLength = Math.min(MAX_BREAK_LENGTH, breakDays / breaks);
+				
+					// Distribute penalty linearly over the breaks
+					double penaltyPerDay = (double) (person.weight * maxPenalty) / (breakLength + 1);		// + 1 to include the day a session is scheduled as well
+				
+					// We then loop over every combination (not permutation) of two sessions for this course
+					for (int i = 0; i < sessionList.size() - 1; i++)
+					{
+						for (int j = i + 1; j < sessionList.size(); j++)
+						{
+							int first = sessionIndexes.get(sessionList.get(i));
+							int second = sessionIndexes.get(sessionList.get(j));
+							int pair = pairIndexes.get(LongIntHashMap.key(first, second));
+
+							if (pair < 0)
+							{
+								pair = addPair(first, second);
+								pairIndexes.put(LongIntHashMap.key(first, second), pair);
+							}
+
+							for (int b = 0; b <= breakLength; b++)
+							{
+								penalties[pair * (MAX_BREAK_LENGTH + 1) + b] += penaltyPerDay * ((breakLength + 1) - b);
+							}
+						}
+					}
+				}
+			}
+
+			// Build adjacency lists
+			int[] startingCounts = new int[sessions.size()];
+			int[] involvingCounts = new int[sessions.size()];
+
+			for (int pair = 0; pair < size; pair++)
+			{
+				startingCounts[firsts[pair]]++;
+				involvingCounts[firsts[pair]]++;
+				involvingCounts[seconds[pair]]++;
+			}
+
+			pairsStartingWith = new int[sessions.size()][];
+			pairsInvolving = new int[sessions.size()][];
+
+			for (int s = 0; s < sessions.size(); s++)
+			{
+				pairsStartingWith[s] = new int[startingCounts[s]];
+				pairsInvolving[s] = new int[involvingCounts[s]];
+			}
+
+			Arrays.fill(startingCounts, 0);
+			Arrays.fill(involvingCounts, 0);
+
+			for (int pair = 0; pair < size; pair++)
+			{
+				pairsStartingWith[firsts[pair]][startingCounts[firsts[pair]]++] = pair;
+				pairsInvolving[firsts[pair]][involvingCounts[firsts[pair]]++] = pair;
+				pairsInvolving[seconds[pair]][involvingCounts[seconds[pair]]++] = pair;
+			}
+		}
+		
+		private int addPair(int first, int second)
+		{
+			if (size == firsts.length)
+			{
+				firsts = Arrays.copyOf(firsts, size * 2);
+				seconds = Arrays.copyOf(seconds, size * 2);
+				penalties = Arrays.copyOf(penalties, size * 2 * (MAX_BREAK_LENGTH + 1));
+			}
+
+			firsts[size] = first;
+			seconds[size] = second;
+			return size++;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public int first(int pair)
+		{
+			return firsts[pair];
+		}
+
+		public int second(int pair)
+		{
+			return seconds[pair];
+		}
+
+		// Penalty for scheduling the second session of a pair the given number of days after the first one
+		public double penalty(int pair, int breakLength)
+		{
+			return (breakLength < 0 || breakLength > MAX_BREAK_LENGTH ? 0 : penalties[pair * (MAX_BREAK_LENGTH + 1) + breakLength]);
+		}
+
+		public int[] pairsStartingWith(int session)
+		{
+			return pairsStartingWith[session];
+		}
+
+		public int[] pairsInvolving(int session)
 		{
-			solver.addObjective(1, spreadPenalties[model.indexOf(session)], Tools.nameConcat(this, session));
+			return pairsInvolving[session];
 		}
 	}
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ import model.Session;
 import model.Slot;
 import model.Model;
 import model.Person;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class AvoidNoLunchBreaks extends Constraint
@@ -19,7 +19,7 @@ public class AvoidNoLunchBreaks extends Constraint
 	private final List<Slot> lunchBreakSlots = new LinkedList<>();
 	private final int penalty;
 
-	public AvoidNoLunchBreaks(GurobiSolver solver, Model model, List<Slot> lunchBreakSlots, int penaltyPerDenial)
+	public AvoidNoLunchBreaks(Solver solver, Model model, List<Slot> lunchBreakSlots, int penaltyPerDenial)
 	{
 		super(solver, model);
 		
@@ -105,7 +105,7 @@ public class AvoidNoLunchBreaks extends Constraint
 		{
 			for (Day day : model.days())
 			{
-				solver.addObjective(person.weight * penalty, lunchBreakDenials[model.persons().indexOf(person)][model.indexOf(day)], Tools.nameConcat(this, person, day));
+				solver.addObjective(person.weight * penalty, lunchBreakDenials[model.persons().indexOf(person)][model.indexOf(day)], (solver.objectiveNamesUsed() ? Tools.nameConcat(this, person, day) : null));
 			}
 		}
 	}
@@ -7,7 +7,7 @@ import model.Session;
 import model.Slot;
 import model.Model;
 import model.Person;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 // Note:	This is not a hard constraint because a stupid student could sign up for more courses
@@ -20,7 +20,7 @@ public class AvoidPersonConflicts extends Constraint
 	private GRBVar[][][] overlaps;
 	private final int penalty;
 
-	public AvoidPersonConflicts(GurobiSolver solver, Model model, int penaltyPerConflict)
+	public AvoidPersonConflicts(Solver solver, Model model, int penaltyPerConflict)
 	{
 		super(solver, model);
 		
@@ -82,7 +82,7 @@ public class AvoidPersonConflicts extends Constraint
 			{
 				for (Slot slot : model.slots())
 				{
-					solver.addObjective(person.weight * penalty, overlaps[model.persons().indexOf(person)][model.indexOf(day)][model.indexOf(slot)], Tools.nameConcat(this, person, day, slot));
+					solver.addObjective(person.weight * penalty, overlaps[model.persons().indexOf(person)][model.indexOf(day)][model.indexOf(slot)], (solver.objectiveNamesUsed() ? Tools.nameConcat(this, person, day, slot) : null));
 				}
 			}
 		}
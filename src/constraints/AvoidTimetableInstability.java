@@ -7,7 +7,7 @@ import model.Person;
 import model.Session;
 import model.Slot;
 import model.Solution;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 // Assign objective function bonuses each time we are able to schedule sessions such that they are "stable" with respect to the solutions of earlier weeks
@@ -19,7 +19,7 @@ public class AvoidTimetableInstability extends Constraint
 	private final List<Solution> solutions;
 	private final int baseBonus;
 	
-	public AvoidTimetableInstability(GurobiSolver solver, Model model, List<Solution> solutions, int bonus)
+	public AvoidTimetableInstability(Solver solver, Model model, List<Solution> solutions, int bonus)
 	{
 		super(solver, model);
 		
@@ -36,23 +36,31 @@ public class AvoidTimetableInstability extends Constraint
 			{
 				for (Slot slot : model.slots(session))
 				{
-					double factor = 0;
-
-					for (Person person : session.persons)
-					{
-						factor += baseBonus * person.weight * bonusFactor(session, day, slot, person);
-					}
+					double factor = bonus(solutions, baseBonus, session, day, slot);
 
 					if (factor > MINIMUM_ACCEPTED_BONUS)
 					{
-						solver.addObjective(-factor, solver.startVar(day, slot, session), Tools.nameConcat(this, session, day, slot));	// Negative because this is a bonus and not a penalty
+						solver.addObjective(-factor, solver.startVar(day, slot, session), (solver.objectiveNamesUsed() ? Tools.nameConcat(this, session, day, slot) : null));	// Negative because this is a bonus and not a penalty
 					}
 				}
 			}
 		}
 	}
 
-	private double bonusFactor(Session session, Day day, Slot slot, Person person)
+	// Returns the bonus for starting a session at a specific time. Also used when evaluating solutions outside of the solver.
+	public static double bonus(List<Solution> solutions, int baseBonus, Session session, Day day, Slot slot)
+	{
+		double factor = 0;
+
+		for (Person person : session.persons)
+		{
+			factor += baseBonus * person.weight * bonusFactor(solutions, session, day, slot, person);
+		}
+
+		return ((factor > MINIMUM_ACCEPTED_BONUS) ? factor : 0);
+	}
+
+	private static double bonusFactor(List<Solution> solutions, Session session, Day day, Slot slot, Person person)
 	{
 		int scheduleCount = 0;		// Number of schedules the given person attends the course of the given session
 		double totalWeight = 0;		// The total weight over these schedules
@@ -4,14 +4,14 @@ import model.Day;
 import model.Session;
 import model.Slot;
 import model.Model;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class AvoidUnalignedAllocation extends Constraint
 {
 	private final int penalty;
 	
-	public AvoidUnalignedAllocation(GurobiSolver solver, Model model, int penalty)
+	public AvoidUnalignedAllocation(Solver solver, Model model, int penalty)
 	{
 		super(solver, model);
 		
@@ -27,16 +27,22 @@ public class AvoidUnalignedAllocation extends Constraint
 			{
 				for (Slot slot : model.slots(session))
 				{
-					if
-					(
-						session.length == 2 && model.indexOf(slot) % 2 != 0
-						|| session.length == 3 && model.indexOf(slot) % 3 != 0
-					)
+					if (isUnaligned(model, session, slot))
 					{
-						solver.addObjective(penalty, solver.startVar(day, slot, session), Tools.nameConcat(this, day, slot, session));
+						solver.addObjective(penalty, solver.startVar(day, slot, session), (solver.objectiveNamesUsed() ? Tools.nameConcat(this, day, slot, session) : null));
 					}
 				}
 			}
 		}
 	}
+	
+	// Also used when evaluating solutions outside of the solver
+	public static boolean isUnaligned(Model model, Session session, Slot startSlot)
+	{
+		return
+		(
+			session.length == 2 && model.indexOf(startSlot) % 2 != 0
+			|| session.length == 3 && model.indexOf(startSlot) % 3 != 0
+		);
+	}
 }
\ No newline at end of file
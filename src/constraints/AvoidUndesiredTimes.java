@@ -9,47 +9,57 @@ import model.Slot;
 import model.Model;
 import org.javatuples.Pair;
 import org.javatuples.Triplet;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.GeputHashMap;
 import util.Tools;
 
 // Assigns penalties for each session each person has scheduled at undesired times
 public class AvoidUndesiredTimes extends Constraint
 {
-	private final GeputHashMap<Pair<Day, Slot>, Integer> penaltyMap = new GeputHashMap<>();
+	private final GeputHashMap<Pair<Day, Slot>, Integer> penaltyMap;
 	
-	public AvoidUndesiredTimes(GurobiSolver solver, Model model, List<Triplet<Day, Slot, Integer>> times)
+	public AvoidUndesiredTimes(Solver solver, Model model, List<Triplet<Day, Slot, Integer>> times)
 	{
 		super(solver, model);
 		
-		for (Triplet<Day, Slot, Integer> time : times)
+		penaltyMap = penaltyMap(model, times);
+	}
+	
+	@Override
+	public void addObjectives()
+	{
+		for (Pair<Day, Slot> entry : penaltyMap.keySet())
 		{
-			List<Day> days = (time.getValue0() != null ? Arrays.asList(time.getValue0()) : model.days());
-			List<Slot> slots = (time.getValue1() != null ? Arrays.asList(time.getValue1()) : model.slots());
-		
-			for (Day day : days)
+			for (Session session : model.sessions())
 			{
-				for (Slot slot : slots)
+				for (GRBVar var : solver.assignVars(entry.getValue0(), entry.getValue1(), session))
 				{
-					Integer currentPenalty = penaltyMap.geput(new Pair<>(day, slot), 0);
-					penaltyMap.put(new Pair<>(day, slot), currentPenalty += time.getValue2());
+					solver.addObjective(penaltyMap.get(entry) * session.weightedPersonCount(), var, (solver.objectiveNamesUsed() ? Tools.nameConcat(this, entry.getValue0(), entry.getValue1(), session) : null));
 				}
 			}
 		}
 	}
 	
-	@Override
-	public void addObjectives()
+	// Returns a map of the total penalty per person for each specific time. Also used when evaluating solutions outside of the solver.
+	public static GeputHashMap<Pair<Day, Slot>, Integer> penaltyMap(Model model, List<Triplet<Day, Slot, Integer>> times)
 	{
-		for (Pair<Day, Slot> entry : penaltyMap.keySet())
+		GeputHashMap<Pair<Day, Slot>, Integer> penaltyMap = new GeputHashMap<>();
+		
+		for (Triplet<Day, Slot, Integer> time : times)
 		{
-			for (Session session : model.sessions())
+			List<Day> days = (time.getValue0() != null ? Arrays.asList(time.getValue0()) : model.days());
+			List<Slot> slots = (time.getValue1() != null ? Arrays.asList(time.getValue1()) : model.slots());
+		
+			for (Day day : days)
 			{
-				for (GRBVar var : solver.assignVars(entry.getValue0(), entry.getValue1(), session))
+				for (Slot slot : slots)
 				{
-					solver.addObjective(penaltyMap.get(entry) * session.weightedPersonCount(), var, Tools.nameConcat(this, entry.getValue0(), entry.getValue1(), session));
+					Integer currentPenalty = penaltyMap.geput(new Pair<>(day, slot), 0);
+					penaltyMap.put(new Pair<>(day, slot), currentPenalty += time.getValue2());
 				}
 			}
 		}
+		
+		return penaltyMap;
 	}
 }
\ No newline at end of file
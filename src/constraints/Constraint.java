@@ -1,7 +1,6 @@
 package constraints;
 
 import model.Model;
-import solvers.GurobiSolver;
 import solvers.Solver;
 
 public abstract class Constraint
@@ -9,7 +8,7 @@ public abstract class Constraint
 	protected final Solver solver;
 	protected final Model model;
 	
-	protected Constraint(GurobiSolver solver, Model model)
+	protected Constraint(Solver solver, Model model)
 	{
 		this.solver = solver;
 		this.model = model;
@@ -6,7 +6,8 @@ import java.util.LinkedList;
 import java.util.List;
 import model.Day;
 import model.Model;
-import solvers.GurobiSolver;
+import model.Session;
+import solvers.Solver;
 import util.Tools;
 
 // TODO: Actually use this constraint!
@@ -14,7 +15,7 @@ public class EnforceDayBlacklisting extends Constraint
 {
 	private final List<Day> blacklistedDays = new LinkedList<>();
 
-	public EnforceDayBlacklisting(GurobiSolver solver, Model model, List<Day> blacklistedDays)
+	public EnforceDayBlacklisting(Solver solver, Model model, List<Day> blacklistedDays)
 	{
 		super(solver, model);
 		
@@ -28,9 +29,12 @@ public class EnforceDayBlacklisting extends Constraint
 		{
 			GRBLinExpr lhs = new GRBLinExpr();
 			
-			for (GRBVar var : solver.assignVars(day, null, null))
+			for (Session session : model.sessions())
 			{
-				lhs.addTerm(1, var);
+				for (GRBVar var : solver.dayVars(day, session))
+				{
+					lhs.addTerm(1, var);
+				}
 			}
 
 			solver.addLessOrEqualsConstr(lhs, 0, Tools.nameConcat(this, day));
@@ -7,12 +7,12 @@ import model.Room;
 import model.Session;
 import model.Slot;
 import model.Model;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceNoRoomConflicts extends Constraint
 {
-	public EnforceNoRoomConflicts(GurobiSolver solver, Model model)
+	public EnforceNoRoomConflicts(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
@@ -8,12 +8,12 @@ import model.Session;
 import model.Slot;
 import model.Model;
 import model.Person;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceNoStaffConflicts extends Constraint
 {
-	public EnforceNoStaffConflicts(GurobiSolver solver, Model model)
+	public EnforceNoStaffConflicts(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
@@ -5,12 +5,12 @@ import model.Day;
 import model.Session;
 import model.Slot;
 import model.Model;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceRoomBreaks extends Constraint
 {
-	public EnforceRoomBreaks(GurobiSolver solver, Model model)
+	public EnforceRoomBreaks(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
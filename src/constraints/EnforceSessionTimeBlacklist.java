@@ -7,12 +7,12 @@ import model.Session;
 import model.Slot;
 import model.Model;
 import org.javatuples.Pair;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceSessionTimeBlacklist extends Constraint
 {
-	public EnforceSessionTimeBlacklist(GurobiSolver solver, Model model)
+	public EnforceSessionTimeBlacklist(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
@@ -8,12 +8,12 @@ import model.Session;
 import model.Slot;
 import model.Model;
 import org.javatuples.Pair;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceSessionTimeWhitelist extends Constraint
 {
-	public EnforceSessionTimeWhitelist(GurobiSolver solver, Model model)
+	public EnforceSessionTimeWhitelist(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
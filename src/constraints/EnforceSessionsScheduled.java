@@ -4,12 +4,12 @@ import gurobi.GRBLinExpr;
 import gurobi.GRBVar;
 import model.Session;
 import model.Model;
-import solvers.GurobiSolver;
+import solvers.Solver;
 import util.Tools;
 
 public class EnforceSessionsScheduled extends Constraint
 {
-	public EnforceSessionsScheduled(GurobiSolver solver, Model model)
+	public EnforceSessionsScheduled(Solver solver, Model model)
 	{
 		super(solver, model);
 	}
@@ -0,0 +1,708 @@
+package evaluators;
+
+import constraints.AvoidNoCourseSpreading;
+import constraints.AvoidTimetableInstability;
+import constraints.AvoidUnalignedAllocation;
+import constraints.AvoidUndesiredTimes;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import model.Day;
+import model.Model;
+import model.Person;
+import model.Room;
+import model.Session;
+import model.Slot;
+import model.Solution;
+import org.javatuples.Pair;
+import org.javatuples.Triplet;
+import util.AsciiTable;
+
+// Scores a timetable against the same hard rules and soft penalties as the constraints used by the solver, but without the solver.
+// A full evaluation is linear in the number of enrollments. Moving a single session only re-scores the persons, room, days and session pairs
+// it affects, making this suitable for heuristics, cross-checking solver output and quick what-if queries.
+// The totals follow the sign convention of the solver objective: penalties are positive and bonuses are negative.
+public class SolutionEvaluator
+{
+	private static final DecimalFormat VALUE_FORMAT = new DecimalFormat("0.00", new DecimalFormatSymbols(Locale.ENGLISH));
+
+	private enum Rule
+	{
+		EnforceSessionsScheduled(true),
+		EnforceSessionTimeWhitelist(true),
+		EnforceSessionTimeBlacklist(true),
+		EnforceNoStaffConflicts(true),
+		EnforceNoRoomConflicts(true),
+		EnforceRoomBreaks(true),
+		AvoidPersonConflicts(false),
+		AvoidNoCourseSpreading(false),
+		AvoidUnalignedAllocation(false),
+		AvoidTimetableInstability(false),
+		AvoidNoLunchBreaks(false),
+		AvoidUndesiredTimes(false);
+
+		public final boolean hard;
+
+		private Rule(boolean hard)
+		{
+			this.hard = hard;
+		}
+	}
+
+	private final Model model;
+	private final int dayCount;
+	private final int slotCount;
+
+	// Problem data, flattened into arrays indexed by session, person and room index
+	private final List<Session> sessions;
+	private final Map<Session, Integer> sessionIndexes = new IdentityHashMap<>();
+	private final int[][] sessionPersons;		// Indexes of the persons attending each session
+	private final boolean[][] sessionStaffs;	// Whether each of these persons attend as staff
+	private final int[] sessionRooms;			// Room index of each session or -1
+	private final int[] sessionLengths;
+	private final double[] sessionWeights;		// Weighted person count of each session
+	private final boolean[][] allowedStarts;	// Per session: whitelisted start times (day * slotCount + slot) or null if not whitelisted
+	private final boolean[][] deniedCells;		// Per session: blacklisted covered times or null if not blacklisted
+	private final List<Person> persons;
+	private final double[] personWeights;
+	private final boolean[] personHasStaffConflicts;	// Whether the person is staff on more than one session (and is thus subject to EnforceNoStaffConflicts)
+	private final List<Room> rooms;
+	private final int[][] roomSessions;
+
+	// Rule parameters
+	private final int personConflictPenalty;
+	private final int unalignedAllocationPenalty;
+	private final List<Solution> previousSolutions;
+	private final int stabilityBonus;
+	private final int[] lunchBreakSlots;
+	private final int lunchBreakPenalty;
+	private final double[] undesiredTimePenalties;		// Per time (day * slotCount + slot)
+	private final double[][] stabilityBonuses;			// Per session and start time. Calculated lazily as it is expensive.
+	private final AvoidNoCourseSpreading.PairPenalties spreadPenalties;
+
+	// Current state
+	private final int[] starts;					// Per session: start time (day * slotCount + slot) or -1 if unscheduled
+	private final int[][] personOccupancy;		// Per person and time: number of sessions covering that time
+	private final int[][] personStaffOccupancy;
+	private final int[][] roomOccupancy;
+	private final int[][] roomStarts;
+	private final double[] penalties = new double[Rule.values().length];
+	private final int[] violations = new int[Rule.values().length];
+
+	public SolutionEvaluator(Model model, int personConflictPenalty, int courseSpreadingPenalty, int unalignedAllocationPenalty, List<Solution> previousSolutions, int stabilityBonus, List<Slot> lunchBreakSlots, int lunchBreakPenalty, List<Triplet<Day, Slot, Integer>> undesiredTimes)
+	{
+		this.model = model;
+		this.dayCount = model.days().size();
+		this.slotCount = model.slots().size();
+		this.personConflictPenalty = personConflictPenalty;
+		this.unalignedAllocationPenalty = unalignedAllocationPenalty;
+		this.previousSolutions = previousSolutions;
+		this.stabilityBonus = stabilityBonus;
+		this.lunchBreakPenalty = lunchBreakPenalty;
+
+		// Index persons, rooms and sessions
+		persons = model.persons();
+		rooms = model.rooms();
+		sessions = model.sessions();
+
+		Map<Person, Integer> personIndexes = new IdentityHashMap<>();
+		personWeights = new double[persons.size()];
+		personHasStaffConflicts = new boolean[persons.size()];
+
+		for (int p = 0; p < persons.size(); p++)
+		{
+			personIndexes.put(persons.get(p), p);
+			personWeights[p] = persons.get(p).weight;
+			personHasStaffConflicts[p] = persons.get(p).staffSessions().size() > 1;
+		}
+
+		sessionPersons = new int[sessions.size()][];
+		sessionStaffs = new boolean[sessions.size()][];
+		sessionRooms = new int[sessions.size()];
+		sessionLengths = new int[sessions.size()];
+		sessionWeights = new double[sessions.size()];
+		allowedStarts = new boolean[sessions.size()][];
+		deniedCells = new boolean[sessions.size()][];
+		stabilityBonuses = new double[sessions.size()][];
+		List<List<Integer>> roomSessionLists = new ArrayList<>();
+
+		for (int r = 0; r < rooms.size(); r++)
+		{
+			roomSessionLists.add(new ArrayList<Integer>());
+		}
+
+		for (int s = 0; s < sessions.size(); s++)
+		{
+			Session session = sessions.get(s);
+			sessionIndexes.put(session, s);
+
+			sessionPersons[s] = new int[session.persons.size()];
+			sessionStaffs[s] = new boolean[session.persons.size()];
+			int i = 0;
+
+			for (Person person : session.persons)
+			{
+				sessionPersons[s][i] = personIndexes.get(person);
+				sessionStaffs[s][i] = session.staffs.contains(person);
+				i++;
+			}
+
+			sessionRooms[s] = (session.room == null ? -1 : rooms.indexOf(session.room));
+			sessionLengths[s] = session.length;
+			sessionWeights[s] = session.weightedPersonCount();
+
+			if (sessionRooms[s] >= 0)
+			{
+				roomSessionLists.get(sessionRooms[s]).add(s);
+			}
+
+			// Whitelisted times, wildcards (null) expanded
+			if (!session.whitelistedTimes.isEmpty())
+			{
+				allowedStarts[s] = new boolean[dayCount * slotCount];
+
+				for (Pair<Day, Slot> time : session.whitelistedTimes)
+				{
+					for (int d : dayIndexes(time.getValue0()))
+					{
+						for (int t : slotIndexes(time.getValue1()))
+						{
+							if (t <= slotCount - session.length)
+							{
+								allowedStarts[s][d * slotCount + t] = true;
+							}
+						}
+					}
+				}
+			}
+
+			// Blacklisted times, wildcards (null) expanded
+			if (!session.blacklistedTimes.isEmpty())
+			{
+				deniedCells[s] = new boolean[dayCount * slotCount];
+
+				for (Pair<Day, Slot> time : session.blacklistedTimes)
+				{
+					for (int d : dayIndexes(time.getValue0()))
+					{
+						for (int t : slotIndexes(time.getValue1()))
+						{
+							deniedCells[s][d * slotCount + t] = true;
+						}
+					}
+				}
+			}
+		}
+
+		roomSessions = new int[rooms.size()][];
+
+		for (int r = 0; r < rooms.size(); r++)
+		{
+			roomSessions[r] = toIntArray(roomSessionLists.get(r));
+		}
+
+		// Lunch break slots
+		this.lunchBreakSlots = new int[lunchBreakSlots.size()];
+
+		for (int i = 0; i < lunchBreakSlots.size(); i++)
+		{
+			this.lunchBreakSlots[i] = model.indexOf(lunchBreakSlots.get(i));
+		}
+
+		// Undesired times
+		undesiredTimePenalties = new double[dayCount * slotCount];
+
+		for (Map.Entry<Pair<Day, Slot>, Integer> entry : AvoidUndesiredTimes.penaltyMap(model, undesiredTimes).entrySet())
+		{
+			undesiredTimePenalties[model.indexOf(entry.getKey().getValue0()) * slotCount + model.indexOf(entry.getKey().getValue1())] = entry.getValue();
+		}
+
+		// Spreading penalties per ordered session pair
+		spreadPenalties = new AvoidNoCourseSpreading.PairPenalties(model, courseSpreadingPenalty);
+
+		// Setup empty state
+		starts = new int[sessions.size()];
+		Arrays.fill(starts, -1);
+		personOccupancy = new int[persons.size()][dayCount * slotCount];
+		personStaffOccupancy = new int[persons.size()][dayCount * slotCount];
+		roomOccupancy = new int[rooms.size()][dayCount * slotCount];
+		roomStarts = new int[rooms.size()][dayCount * slotCount];
+	}
+
+	// Evaluates a complete solution from scratch, replacing the current state of the evaluator
+	public void load(Solution solution)
+	{
+		Arrays.fill(starts, -1);
+		Arrays.fill(penalties, 0);
+		Arrays.fill(violations, 0);
+
+		for (int[] occupancy : personOccupancy)
+		{
+			Arrays.fill(occupancy, 0);
+		}
+
+		for (int[] occupancy : personStaffOccupancy)
+		{
+			Arrays.fill(occupancy, 0);
+		}
+
+		for (int[] occupancy : roomOccupancy)
+		{
+			Arrays.fill(occupancy, 0);
+		}
+
+		for (int[] roomStart : roomStarts)
+		{
+			Arrays.fill(roomStart, 0);
+		}
+
+		// Place all sessions
+		for (int s = 0; s < sessions.size(); s++)
+		{
+			Pair<Day, Slot> start = solution.scheduledStart(sessions.get(s));
+
+			if (start != null)
+			{
+				place(s, model.indexOf(start.getValue0()) * slotCount + model.indexOf(start.getValue1()), 1);
+			}
+		}
+
+		// Then score everything once
+		for (int s = 0; s < sessions.size(); s++)
+		{
+			scoreSession(s, 1);
+		}
+
+		for (int p = 0; p < persons.size(); p++)
+		{
+			for (int d = 0; d < dayCount; d++)
+			{
+				scorePersonDay(p, d, 1);
+			}
+		}
+
+		for (int r = 0; r < rooms.size(); r++)
+		{
+			for (int d = 0; d < dayCount; d++)
+			{
+				scoreRoomDay(r, d, 1);
+			}
+		}
+
+		for (int pair = 0; pair < spreadPenalties.size(); pair++)
+		{
+			scoreSpreadPair(pair, 1);
+		}
+	}
+
+	// Moves a session to start at the given time (or unschedules it if day and slot are null) and returns the change of the total
+	public double move(Session session, Day day, Slot slot)
+	{
+		double previousTotal = total();
+		int s = sessionIndex(session);
+		int newStart = -1;
+
+		if (day != null && slot != null)
+		{
+			if (!model.sessionFits(session, slot))
+			{
+				throw new IllegalArgumentException("Session " + session + " does not fit into slot " + slot);
+			}
+
+			newStart = model.indexOf(day) * slotCount + model.indexOf(slot);
+		}
+
+		int oldStart = starts[s];
+
+		if (oldStart != newStart)
+		{
+			scoreAffected(s, oldStart, newStart, -1);
+
+			if (oldStart >= 0)
+			{
+				place(s, oldStart, -1);
+			}
+
+			if (newStart >= 0)
+			{
+				place(s, newStart, 1);
+			}
+
+			scoreAffected(s, oldStart, newStart, 1);
+		}
+
+		return total() - previousTotal;
+	}
+
+	// Returns the change of the total if the given session was moved, without actually moving it
+	public double moveDelta(Session session, Day day, Slot slot)
+	{
+		int oldStart = starts[sessionIndex(session)];
+		double delta = move(session, day, slot);
+		move(session, (oldStart < 0 ? null : model.days().get(oldStart / slotCount)), (oldStart < 0 ? null : model.slots().get(oldStart % slotCount)));
+		return delta;
+	}
+
+	public double total()
+	{
+		double total = 0;
+
+		for (double penalty : penalties)
+		{
+			total += penalty;
+		}
+
+		return total;
+	}
+
+	public int hardViolations()
+	{
+		int total = 0;
+
+		for (int violation : violations)
+		{
+			total += violation;
+		}
+
+		return total;
+	}
+
+	public boolean isFeasible()
+	{
+		return hardViolations() == 0;
+	}
+
+	// Returns the penalty (or bonus, if negative) per soft constraint
+	public Map<String, Double> penalties()
+	{
+		Map<String, Double> result = new LinkedHashMap<>();
+
+		for (Rule rule : Rule.values())
+		{
+			if (!rule.hard)
+			{
+				result.put(rule.name(), penalties[rule.ordinal()]);
+			}
+		}
+
+		return result;
+	}
+
+	// Returns the number of violations per hard constraint
+	public Map<String, Integer> violations()
+	{
+		Map<String, Integer> result = new LinkedHashMap<>();
+
+		for (Rule rule : Rule.values())
+		{
+			if (rule.hard)
+			{
+				result.put(rule.name(), violations[rule.ordinal()]);
+			}
+		}
+
+		return result;
+	}
+
+	public Solution toSolution()
+	{
+		Map<Session, Pair<Day, Slot>> schedule = new HashMap<>();
+
+		for (int s = 0; s < sessions.size(); s++)
+		{
+			if (starts[s] >= 0)
+			{
+				schedule.put(sessions.get(s), new Pair<>(model.days().get(starts[s] / slotCount), model.slots().get(starts[s] % slotCount)));
+			}
+		}
+
+		return new Solution(model, schedule);
+	}
+
+	@Override
+	public String toString()
+	{
+		AsciiTable table = new AsciiTable(true, false, false);
+		table.addRow(model.modelName, "Violations", "Penalty");
+		table.addDelimiter();
+
+		for (Rule rule : Rule.values())
+		{
+			table.addRow(rule.name(), (rule.hard ? violations[rule.ordinal()] : ""), (rule.hard ? "" : VALUE_FORMAT.format(penalties[rule.ordinal()])));
+		}
+
+		table.addDelimiter();
+		table.addRow("Total", hardViolations(), VALUE_FORMAT.format(total()));
+
+		return table.toString();
+	}
+
+	// Adds (sign = 1) or removes (sign = -1) the score of everything affected by moving a session between two start times
+	private void scoreAffected(int s, int oldStart, int newStart, int sign)
+	{
+		int oldDay = (oldStart < 0 ? -1 : oldStart / slotCount);
+		int newDay = (newStart < 0 ? -1 : newStart / slotCount);
+
+		scoreSession(s, sign);
+
+		for (int p : sessionPersons[s])
+		{
+			if (oldDay >= 0)
+			{
+				scorePersonDay(p, oldDay, sign);
+			}
+
+			if (newDay >= 0 && newDay != oldDay)
+			{
+				scorePersonDay(p, newDay, sign);
+			}
+		}
+
+		if (sessionRooms[s] >= 0)
+		{
+			if (oldDay >= 0)
+			{
+				scoreRoomDay(sessionRooms[s], oldDay, sign);
+			}
+
+			if (newDay >= 0 && newDay != oldDay)
+			{
+				scoreRoomDay(sessionRooms[s], newDay, sign);
+			}
+		}
+
+		for (int pair : spreadPenalties.pairsInvolving(s))
+		{
+			scoreSpreadPair(pair, sign);
+		}
+	}
+
+	private void place(int s, int start, int delta)
+	{
+		starts[s] = (delta > 0 ? start : -1);
+
+		for (int i = 0; i < sessionPersons[s].length; i++)
+		{
+			for (int time = start; time < start + sessionLengths[s]; time++)
+			{
+				personOccupancy[sessionPersons[s][i]][time] += delta;
+
+				if (sessionStaffs[s][i])
+				{
+					personStaffOccupancy[sessionPersons[s][i]][time] += delta;
+				}
+			}
+		}
+
+		if (sessionRooms[s] >= 0)
+		{
+			for (int time = start; time < start + sessionLengths[s]; time++)
+			{
+				roomOccupancy[sessionRooms[s]][time] += delta;
+			}
+
+			roomStarts[sessionRooms[s]][start] += delta;
+		}
+	}
+
+	// Rules depending on a single session only
+	private void scoreSession(int s, int sign)
+	{
+		int start = starts[s];
+
+		if (start < 0)
+		{
+			violations[Rule.EnforceSessionsScheduled.ordinal()] += sign;
+			return;
+		}
+
+		if (allowedStarts[s] != null && !allowedStarts[s][start])
+		{
+			violations[Rule.EnforceSessionTimeWhitelist.ordinal()] += sign;
+		}
+
+		for (int time = start; time < start + sessionLengths[s]; time++)
+		{
+			if (deniedCells[s] != null && deniedCells[s][time])
+			{
+				violations[Rule.EnforceSessionTimeBlacklist.ordinal()] += sign;
+			}
+
+			penalties[Rule.AvoidUndesiredTimes.ordinal()] += sign * undesiredTimePenalties[time] * sessionWeights[s];
+		}
+
+		Session session = sessions.get(s);
+
+		if (AvoidUnalignedAllocation.isUnaligned(model, session, model.slots().get(start % slotCount)))
+		{
+			penalties[Rule.AvoidUnalignedAllocation.ordinal()] += sign * unalignedAllocationPenalty;
+		}
+
+		penalties[Rule.AvoidTimetableInstability.ordinal()] -= sign * stabilityBonus(s, start);
+	}
+
+	// Rules depending on the sessions of a single person during a single day
+	private void scorePersonDay(int p, int d, int sign)
+	{
+		int[] occupancy = personOccupancy[p];
+		int[] staffOccupancy = personStaffOccupancy[p];
+
+		for (int time = d * slotCount; time < (d + 1) * slotCount; time++)
+		{
+			if (occupancy[time] > 1)
+			{
+				penalties[Rule.AvoidPersonConflicts.ordinal()] += sign * personWeights[p] * personConflictPenalty * (occupancy[time] - 1);
+			}
+
+			if (personHasStaffConflicts[p] && staffOccupancy[time] > 1)
+			{
+				violations[Rule.EnforceNoStaffConflicts.ordinal()] += sign * (staffOccupancy[time] - 1);
+			}
+		}
+
+		if (lunchBreakSlots.length > 0)
+		{
+			boolean lunchBreakDenied = true;
+
+			for (int t : lunchBreakSlots)
+			{
+				lunchBreakDenied = lunchBreakDenied && occupancy[d * slotCount + t] > 0;
+			}
+
+			if (lunchBreakDenied)
+			{
+				penalties[Rule.AvoidNoLunchBreaks.ordinal()] += sign * personWeights[p] * lunchBreakPenalty;
+			}
+		}
+	}
+
+	// Rules depending on the sessions in a single room during a single day
+	private void scoreRoomDay(int r, int d, int sign)
+	{
+		for (int time = d * slotCount; time < (d + 1) * slotCount; time++)
+		{
+			if (roomOccupancy[r][time] > 1)
+			{
+				violations[Rule.EnforceNoRoomConflicts.ordinal()] += sign * (roomOccupancy[r][time] - 1);
+			}
+		}
+
+		// Room breaks. Mirrors EnforceRoomBreaks: the break slots are the ones following the session, as long as the session itself would fit in them.
+		for (int s : roomSessions[r])
+		{
+			Session session = sessions.get(s);
+
+			if (session.roomBreak > 0 && starts[s] >= 0 && starts[s] / slotCount == d)
+			{
+				int breakStart = starts[s] % slotCount + session.length;
+				int breakEnd = Math.min(breakStart + session.roomBreak, slotCount - session.length + 1);
+
+				for (int t = breakStart; t < breakEnd; t++)
+				{
+					violations[Rule.EnforceRoomBreaks.ordinal()] += sign * roomStarts[r][d * slotCount + t];
+				}
+			}
+		}
+	}
+
+	private void scoreSpreadPair(int pair, int sign)
+	{
+		int first = spreadPenalties.first(pair);
+		int second = spreadPenalties.second(pair);
+
+		if (starts[first] >= 0 && starts[second] >= 0)
+		{
+			int breakLength = (starts[second] / slotCount) - (starts[first] / slotCount);
+			penalties[Rule.AvoidNoCourseSpreading.ordinal()] += sign * spreadPenalties.penalty(pair, breakLength);
+		}
+	}
+
+	private double stabilityBonus(int s, int start)
+	{
+		if (previousSolutions.isEmpty())
+		{
+			return 0;
+		}
+
+		if (stabilityBonuses[s] == null)
+		{
+			Session session = sessions.get(s);
+			stabilityBonuses[s] = new double[dayCount * slotCount];
+
+			for (int d = 0; d < dayCount; d++)
+			{
+				for (Slot slot : model.slots(session))
+				{
+					stabilityBonuses[s][d * slotCount + model.indexOf(slot)] = AvoidTimetableInstability.bonus(previousSolutions, stabilityBonus, session, model.days().get(d), slot);
+				}
+			}
+		}
+
+		return stabilityBonuses[s][start];
+	}
+
+	private int sessionIndex(Session session)
+	{
+		Integer index = sessionIndexes.get(session);
+
+		if (index == null)
+		{
+			throw new IllegalArgumentException("Session " + session + " is not part of model " + model.modelName);
+		}
+
+		return index;
+	}
+
+	private int[] dayIndexes(Day day)
+	{
+		if (day != null)
+		{
+			return new int[] {model.indexOf(day)};
+		}
+
+		int[] indexes = new int[dayCount];
+
+		for (int d = 0; d < dayCount; d++)
+		{
+			indexes[d] = d;
+		}
+
+		return indexes;
+	}
+
+	private int[] slotIndexes(Slot slot)
+	{
+		if (slot != null)
+		{
+			return new int[] {model.indexOf(slot)};
+		}
+
+		int[] indexes = new int[slotCount];
+
+		for (int t = 0; t < slotCount; t++)
+		{
+			indexes[t] = t;
+		}
+
+		return indexes;
+	}
+
+	private static int[] toIntArray(List<Integer> list)
+	{
+		int[] array = new int[list.size()];
+
+		for (int i = 0; i < list.size(); i++)
+		{
+			array[i] = list.get(i);
+		}
+
+		return array;
+	}
+}
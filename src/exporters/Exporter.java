@@ -1,9 +1,9 @@
 package exporters;
 
 import model.Model;
-import solvers.Solver;
+import model.Solution;
 
 public interface Exporter
 {
-	void export(Model model, Solver solver, boolean finalExport);
+	void export(Model model, Solution solution, boolean finalExport);
 }
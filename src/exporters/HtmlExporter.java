@@ -7,37 +7,173 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.security.AccessControlException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import model.Course;
 import model.Day;
 import model.Session;
 import model.Slot;
+import model.Solution;
 import model.Model;
 import model.Person;
 import org.javatuples.Pair;
-import solvers.Solver;
 import util.Tools;
 
 public class HtmlExporter implements Exporter
 {
 	private static final String FILENAME_SANITIZER = "[^a-zA-Z0-9æøåÆØÅ\\-_]+";
 	private static final int NONFINAL_SCHEDULE_REFRESH_INTERVAL = 2;
+	private static final int THREADS_PER_CORE = 4;
+	private static final int MAX_OPEN_FILES = 32;
+	private static final String CONTINUE_CONTENT = "<div class=\"continue\">&#8226;<br>&#8226;<br>&#8226;</div>";
+	
+	private static final int IDLE_THREAD_SECONDS = 10;
 	
 	private final String dataFolder;
 	private final String outputFolder;
-	private boolean outputFolderCleaned = false;
+	private final ThreadPoolExecutor executor;
+	private final Semaphore openFiles = new Semaphore(MAX_OPEN_FILES);	// Shared by all exports, which may run at the same time on different threads
+	private boolean outputFolderCleaned = false;	// Guarded by this
 
 	public HtmlExporter(String dataFolder, String outputFolder)
 	{
 		this.dataFolder = dataFolder;
 		this.outputFolder = outputFolder;
+		
+		// Writing timetables blocks on the disk much of the time, so there are more threads than cores. The threads are daemons and end when idle,
+		// as exporters are never closed.
+		int threads = Runtime.getRuntime().availableProcessors() * THREADS_PER_CORE;
+		executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, HtmlExporter.class.getSimpleName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
 	}
 	
 	@Override
-	public void export(Model model, Solver solver, boolean finalExport)
+	public void export(final Model model, Solution solution, final boolean finalExport)
+	{
+		cleanOutputFolder();
+		
+		// Create folder for this model
+		final String sanitizedModelName = model.modelName.replaceAll(FILENAME_SANITIZER, "");
+		final File modelFolder = new File(outputFolder + "/" + sanitizedModelName + "/");
+		
+		if (!modelFolder.mkdir() && !modelFolder.isDirectory())
+		{
+			throw new AccessControlException("Could not create export directory " + modelFolder);
+		}
+
+		// Find where every session is scheduled and render it once. Timetables are then built from these in a single pass over the sessions of each
+		// person and course, rather than looking up every session of a person for every time of the week.
+		final Map<Session, RenderedSession> renderedSessions = new IdentityHashMap<>();
+		
+		for (Session session : model.sessions())
+		{
+			Pair<Day, Slot> start = solution.scheduledStart(session);
+			
+			if (start != null)
+			{
+				renderedSessions.put(session, new RenderedSession(session, model.indexOf(start.getValue0()), model.indexOf(start.getValue1())));
+			}
+		}
+		
+		// Generate the timetables in parallel, with the number of files open at the same time bounded separately
+		List<Future<?>> futures = new ArrayList<>();
+		
+		try
+		{
+			// Generate timetable for each student
+			for (final Person person : model.persons())
+			{
+				futures.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						StringBuilder[][] cells = new StringBuilder[model.days().size()][model.slots().size()];
+						
+						for (Session session : person.sessions())
+						{
+							addSession(cells, renderedSessions.get(session), session.staffs.contains(person));
+						}
+						
+						// Now print the timetable
+						String sanitizedPersonName = person.name.replaceAll(FILENAME_SANITIZER, "");
+						File file = new File(modelFolder + "/" + sanitizedModelName + "_Person_" + sanitizedPersonName + ".htm");
+						writeTimetable(model, file, person.name, cells, finalExport);
+					}
+				}));
+			}
+			
+			// Generate timetable for each course
+			for (final Course course : model.courses())
+			{
+				futures.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						StringBuilder[][] cells = new StringBuilder[model.days().size()][model.slots().size()];
+						
+						for (Session session : course.sessions(null))
+						{
+							addSession(cells, renderedSessions.get(session), false);
+						}
+						
+						// Now print the timetable
+						String sanitizedCourseName = course.name.replaceAll(FILENAME_SANITIZER, "");
+						File file = new File(modelFolder + "/" + sanitizedModelName + "_Course_" + sanitizedCourseName + ".htm");
+						writeTimetable(model, file, course.name, cells, finalExport);
+					}
+				}));
+			}
+			
+			for (Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException ex)
+				{
+					throw (ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause()));
+				}
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+		finally
+		{
+			// Stop the remaining timetables of this export if one of them failed
+			for (Future<?> future : futures)
+			{
+				future.cancel(true);
+			}
+		}
+	}
+	
+	// Deletes old output and creates a new empty output dir on the first export. Synchronized, as intermediate and final exports may run on
+	// different threads.
+	private synchronized void cleanOutputFolder()
 	{
-		// Delete old output and create new empty output dir
 		if (!outputFolderCleaned)
 		{
 			File folder = new File(outputFolder + "/");
@@ -75,116 +211,42 @@ public class HtmlExporter implements Exporter
 			
 			outputFolderCleaned = true;
 		}
-		
-		// Create folder for this model
-		String sanitizedModelName = model.modelName.replaceAll(FILENAME_SANITIZER, "");
-		File modelFolder = new File(outputFolder + "/" + sanitizedModelName + "/");
-		
-		if (!modelFolder.exists() && !modelFolder.mkdir())
-		{
-			throw new AccessControlException("Could not create export directory " + modelFolder);
-		}
-
-		// Generate timetable for each student
-		for (Person person : model.persons())
+	}
+	
+	// Adds a session to the cells of a timetable, indexed by day and slot. The first slot of the session shows the session itself, and the slots
+	// after it show a continuation mark at the top of the cell.
+	private static void addSession(StringBuilder[][] cells, RenderedSession session, boolean staff)
+	{
+		if (session == null)
 		{
-			Map<Pair<Day, Slot>, String> tdMap = new HashMap<>();
-			
-			for (Day day : model.days())
-			{
-				for (Slot slot : model.slots())
-				{
-					StringBuilder content = new StringBuilder();
-					boolean overlap = false;
-					
-					for (Session session : person.sessions())
-					{
-						buildSessionString(content, model, solver, day, slot, session, person);
-					}
-					
-					String td = "<td" + (overlap ? " class=\"overlap\"" : "") + ">" + content + "</td>";
-					tdMap.put(new Pair<>(day, slot), td);
-				}
-			}
-			
-			// Now print the timetable
-			String sanitizedPersonName = person.name.replaceAll(FILENAME_SANITIZER, "");
-			File file = new File(modelFolder + "/" + sanitizedModelName + "_Person_" + sanitizedPersonName + ".htm");
-			writeTimetable(model, file, person.name, tdMap, finalExport);
+			return;		// Not scheduled
 		}
 		
-		// Generate timetable for each course
-		for (Course course : model.courses())
+		StringBuilder[] dayCells = cells[session.dayIndex];
+		
+		for (int slotIndex = session.slotIndex; slotIndex < Math.min(session.slotIndex + session.length, dayCells.length); slotIndex++)
 		{
-			Map<Pair<Day, Slot>, String> tdMap = new HashMap<>();
-			
-			for (Day day : model.days())
+			if (dayCells[slotIndex] == null)
 			{
-				for (Slot slot : model.slots())
-				{
-					StringBuilder content = new StringBuilder();
-					
-					for (Session session : course.sessions(null))
-					{
-						buildSessionString(content, model, solver, day, slot, session, null);
-					}
-					
-					String td = "<td>" + content + "</td>";
-					tdMap.put(new Pair<>(day, slot), td);
-				}
+				dayCells[slotIndex] = new StringBuilder();
 			}
 			
-			// Now print the timetable
-			String sanitizedCourseName = course.name.replaceAll(FILENAME_SANITIZER, "");
-			File file = new File(modelFolder + "/" + sanitizedModelName + "_Course_" + sanitizedCourseName + ".htm");
-			writeTimetable(model, file, course.name, tdMap, finalExport);
-		}
-	}
-	
-	private void buildSessionString(StringBuilder content, Model model, Solver solver, Day day, Slot slot, Session session, Person person)
-	{
-		if (solver.isScheduledDuring(day, slot, session))
-		{
-			if (model.previous(slot) != null && solver.isScheduledDuring(day, model.previous(slot), session))
+			if (slotIndex == session.slotIndex)
 			{
-				content.insert(0, "<div class=\"continue\">&#8226;<br>&#8226;<br>&#8226;</div>");
+				dayCells[slotIndex].append(staff ? session.staffContent : session.content);
 			}
 			else
 			{
-				content.append("<div>");
-
-				content.append(session.course.toString());
-				content.append(" ").append(session.groups);
-
-				if (session.type != null)
-				{
-					content.append(" (").append(session.type).append(")");
-				}
-
-				if (person != null && session.staffs.contains(person))
-				{
-					content.append(" [STAFF]");
-				}
-
-				if (session.title != null)
-				{
-					content.append("<br>");
-					content.append(session.title);
-				}	
-
-				if (session.room != null)
-				{
-					content.append("<br>");
-					content.append(session.room.toString());
-				}
-
-				content.append("</div>");
+				dayCells[slotIndex].insert(0, CONTINUE_CONTENT);
 			}
 		}
 	}
-
-	private void writeTimetable(Model model, File file, String timetableName, Map<Pair<Day, Slot>, String> tdMap, boolean finalExport)
+	
+	// Writes a timetable once the number of open files allows it
+	private void writeTimetable(Model model, File file, String timetableName, StringBuilder[][] cells, boolean finalExport)
 	{
+		openFiles.acquireUninterruptibly();
+		
 		try (BufferedWriter out = new BufferedWriter(new FileWriter(file)))
 		{
 			out.write("<html>");
@@ -208,13 +270,18 @@ public class HtmlExporter implements Exporter
 								out.write("<td class=\"day\">" + day + "</td>");
 							}
 						out.write("</tr>");
-						for (Slot slot : model.slots())
+						for (int slotIndex = 0; slotIndex < model.slots().size(); slotIndex++)
 						{
 							out.write("<tr>");
-								out.write("<td class=\"time\">" + slot + "</td>");
-								for (Day day : model.days())
+								out.write("<td class=\"time\">" + model.slots().get(slotIndex) + "</td>");
+								for (int dayIndex = 0; dayIndex < model.days().size(); dayIndex++)
 								{
-									out.write(tdMap.get(new Pair<>(day, slot)));
+									out.write("<td>");
+									if (cells[dayIndex][slotIndex] != null)
+									{
+										out.write(cells[dayIndex][slotIndex].toString());
+									}
+									out.write("</td>");
 								}
 							out.write("</tr>");
 						}
@@ -226,6 +293,10 @@ public class HtmlExporter implements Exporter
 		{
 			throw new RuntimeException(ex);
 		}
+		finally
+		{
+			openFiles.release();
+		}
 	}
 	
 	private boolean deleteSafetyCheck(File folder)
@@ -247,4 +318,57 @@ public class HtmlExporter implements Exporter
 		
 		return true;
 	}
+	
+	// A scheduled session with its start and content rendered once for all the timetables it appears in
+	private static final class RenderedSession
+	{
+		public final int dayIndex;
+		public final int slotIndex;
+		public final int length;
+		public final String content;
+		public final String staffContent;		// Marked as taught by the person of the timetable
+		
+		public RenderedSession(Session session, int dayIndex, int slotIndex)
+		{
+			this.dayIndex = dayIndex;
+			this.slotIndex = slotIndex;
+			this.length = session.length;
+			this.content = render(session, false);
+			this.staffContent = render(session, true);
+		}
+		
+		private static String render(Session session, boolean staff)
+		{
+			StringBuilder content = new StringBuilder();
+			content.append("<div>");
+
+			content.append(session.course.toString());
+			content.append(" ").append(session.groups);
+
+			if (session.type != null)
+			{
+				content.append(" (").append(session.type).append(")");
+			}
+
+			if (staff)
+			{
+				content.append(" [STAFF]");
+			}
+
+			if (session.title != null)
+			{
+				content.append("<br>");
+				content.append(session.title);
+			}	
+
+			if (session.room != null)
+			{
+				content.append("<br>");
+				content.append(session.room.toString());
+			}
+
+			content.append("</div>");
+			return content.toString();
+		}
+	}
 }
\ No newline at end of file
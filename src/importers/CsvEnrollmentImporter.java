@@ -0,0 +1,402 @@
+package importers;
+
+import importers.ProblemSpec.EnrollmentSpec;
+import importers.ProblemSpec.SessionSpec;
+import importers.ProblemSpec.StudentSpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.Model;
+
+// Imports courses and sessions from JSON input (through JsonImporter or MultiFileImporter) and enrollments from a flat CSV file with one row per student, course and group.
+// The CSV file needs a header naming the student, course and group columns. Other columns are ignored. Fields may be quoted, but not span lines.
+// The file is split into chunks at line breaks, which are parsed in parallel. Rows are then merged in file order into an index of students,
+// their courses and their groups, where duplicate rows are dropped. Enrollments from the students section of the JSON file (if any) are kept as well.
+public class CsvEnrollmentImporter implements SpecImporter
+{
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	private static final String[] COLUMNS = {"student", "course", "group"};
+	
+	private final SpecImporter courseImporter;
+	private final String enrollmentsFilePath;
+	private ProblemSpec spec = null;
+	
+	public CsvEnrollmentImporter(String coursesFilePath, String enrollmentsFilePath)
+	{
+		this(new JsonImporter(coursesFilePath), enrollmentsFilePath);
+	}
+	
+	public CsvEnrollmentImporter(SpecImporter courseImporter, String enrollmentsFilePath)
+	{
+		this.courseImporter = courseImporter;
+		this.enrollmentsFilePath = enrollmentsFilePath;
+	}
+	
+	@Override
+	public int importProblem(Model model)
+	{
+		return spec().importProblem(model);
+	}
+	
+	// Returns the courses of the JSON file together with the students of both files, parsing them if not done already
+	@Override
+	public ProblemSpec spec()
+	{
+		if (spec == null)
+		{
+			ProblemSpec courseSpec = courseImporter.spec();
+			Set<String> courseNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);	// The model merges courses by name ignoring case, so references do so too
+			courseNames.addAll(courseSpec.courseNames());
+			ProblemSpec newSpec = new ProblemSpec();
+			
+			for (SessionSpec session : courseSpec.sessions())
+			{
+				newSpec.addSession(session);
+			}
+			
+			for (StudentSpec student : courseSpec.students())
+			{
+				newSpec.addStudent(student);
+			}
+			
+			for (StudentSpec student : parseEnrollments(courseNames))
+			{
+				newSpec.addStudent(student);
+			}
+			
+			spec = newSpec;
+		}
+		
+		return spec;
+	}
+	
+	private List<StudentSpec> parseEnrollments(Set<String> courseNames)
+	{
+		try (FileChannel channel = FileChannel.open(Paths.get(enrollmentsFilePath), StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			// Parse the header
+			int position = skipByteOrderMark(buffer);
+			int headerEnd = lineEnd(buffer, position);
+			List<String> header;
+			
+			try
+			{
+				header = parseLine(buffer, position, headerEnd, 1);
+			}
+			catch (ChunkParseException ex)
+			{
+				throw new IllegalStateException("Error in enrollment file '" + enrollmentsFilePath + "' at line 1: " + ex.getMessage());
+			}
+			
+			int[] columns = new int[COLUMNS.length];
+			
+			for (int i = 0; i < COLUMNS.length; i++)
+			{
+				columns[i] = -1;
+				
+				for (int j = 0; j < header.size(); j++)
+				{
+					if (header.get(j).trim().toLowerCase(Locale.ROOT).equals(COLUMNS[i]))
+					{
+						columns[i] = j;
+						break;
+					}
+				}
+				
+				if (columns[i] == -1)
+				{
+					throw new IllegalStateException("Error in enrollment file '" + enrollmentsFilePath + "': The header must name a '" + COLUMNS[i] + "' column");
+				}
+			}
+			
+			// Split the rest into chunks of whole lines and parse them in parallel
+			int threads = Runtime.getRuntime().availableProcessors();
+			int dataStart = Math.min(headerEnd + 1, buffer.limit());
+			int chunkSize = Math.max(MIN_CHUNK_SIZE, (buffer.limit() - dataStart) / threads + 1);
+			List<Integer> chunkStarts = new ArrayList<>();
+			
+			for (int chunkStart = dataStart; chunkStart < buffer.limit(); chunkStart = Math.min(lineEnd(buffer, Math.min(chunkStart + chunkSize, buffer.limit())) + 1, buffer.limit()))
+			{
+				chunkStarts.add(chunkStart);
+			}
+			
+			chunkStarts.add(buffer.limit());
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			
+			try
+			{
+				List<Future<List<String[]>>> chunks = new ArrayList<>();
+				
+				for (int chunk = 0; chunk < chunkStarts.size() - 1; chunk++)
+				{
+					chunks.add(executor.submit(new ChunkParser(buffer.duplicate(), chunkStarts.get(chunk), chunkStarts.get(chunk + 1), columns)));
+				}
+				
+				// Merge the rows in file order, so students and their enrollments keep the order of the file
+				Map<String, Map<String, Set<String>>> enrollments = new LinkedHashMap<>();
+				Map<String, String> strings = new HashMap<>();
+				int lineOffset = 1;		// Lines before the current chunk, starting with the header
+				
+				for (int chunk = 0; chunk < chunks.size(); chunk++)
+				{
+					List<String[]> rows;
+					
+					try
+					{
+						rows = chunks.get(chunk).get();
+					}
+					catch (ExecutionException ex)
+					{
+						if (ex.getCause() instanceof ChunkParseException)
+						{
+							ChunkParseException parseException = (ChunkParseException) ex.getCause();
+							throw new IllegalStateException("Error in enrollment file '" + enrollmentsFilePath + "' at line " + (lineOffset + parseException.line) + ": " + parseException.getMessage());
+						}
+						
+						throw new RuntimeException(ex.getCause());
+					}
+					
+					for (int row = 0; row < rows.size(); row++)
+					{
+						String[] fields = rows.get(row);
+						
+						if (fields == null)
+						{
+							continue;	// Blank line
+						}
+						
+						if (!courseNames.contains(fields[1]))
+						{
+							throw new IllegalStateException("Error in enrollment file '" + enrollmentsFilePath + "' at line " + (lineOffset + row + 1) + ": Could not find specifications for course '" + fields[1] + "'");
+						}
+						
+						Map<String, Set<String>> studentCourses = enrollments.get(fields[0]);
+						
+						if (studentCourses == null)
+						{
+							studentCourses = new LinkedHashMap<>();
+							enrollments.put(canonical(strings, fields[0]), studentCourses);
+						}
+						
+						Set<String> groups = studentCourses.get(fields[1]);
+						
+						if (groups == null)
+						{
+							groups = new LinkedHashSet<>();
+							studentCourses.put(canonical(strings, fields[1]), groups);
+						}
+						
+						groups.add(canonical(strings, fields[2]));		// Duplicate rows end up here and are dropped
+					}
+					
+					lineOffset += rows.size();
+				}
+				
+				List<StudentSpec> students = new ArrayList<>();
+				
+				for (Map.Entry<String, Map<String, Set<String>>> student : enrollments.entrySet())
+				{
+					List<EnrollmentSpec> attendance = new ArrayList<>();
+					
+					for (Map.Entry<String, Set<String>> course : student.getValue().entrySet())
+					{
+						attendance.add(new EnrollmentSpec(course.getKey(), new ArrayList<>(course.getValue())));
+					}
+					
+					students.add(new StudentSpec(student.getKey(), null, attendance));
+				}
+				
+				return students;
+			}
+			catch (InterruptedException ex)
+			{
+				throw new RuntimeException(ex);
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	private static int skipByteOrderMark(ByteBuffer buffer)
+	{
+		if (buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF)
+		{
+			return 3;
+		}
+		
+		return 0;
+	}
+	
+	// Returns the position of the line break ending the line at the given position, or the end of the buffer
+	private static int lineEnd(ByteBuffer buffer, int position)
+	{
+		while (position < buffer.limit() && buffer.get(position) != '\n')
+		{
+			position++;
+		}
+		
+		return position;
+	}
+	
+	// Splits a line of UTF-8 into fields. Line breaks and ASCII quotes never occur inside multi-byte UTF-8 characters, so bytes can be scanned directly.
+	private static List<String> parseLine(ByteBuffer buffer, int start, int end, int line)
+	{
+		if (end > start && buffer.get(end - 1) == '\r')
+		{
+			end--;
+		}
+		
+		List<String> fields = new ArrayList<>();
+		byte[] field = new byte[end - start];
+		int fieldLength = 0;
+		boolean quoted = false;
+		
+		for (int position = start; position < end; position++)
+		{
+			byte character = buffer.get(position);
+			
+			if (quoted)
+			{
+				if (character != '"')
+				{
+					field[fieldLength++] = character;
+				}
+				else if (position + 1 < end && buffer.get(position + 1) == '"')
+				{
+					field[fieldLength++] = '"';		// Escaped quote
+					position++;
+				}
+				else
+				{
+					quoted = false;
+				}
+			}
+			else if (character == '"')
+			{
+				quoted = true;
+			}
+			else if (character == ',')
+			{
+				fields.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+				fieldLength = 0;
+			}
+			else
+			{
+				field[fieldLength++] = character;
+			}
+		}
+		
+		if (quoted)
+		{
+			throw new ChunkParseException(line, "Unterminated quoted field");
+		}
+		
+		fields.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+		return fields;
+	}
+	
+	private static String canonical(Map<String, String> strings, String string)
+	{
+		String canonicalString = strings.get(string);
+		
+		if (canonicalString == null)
+		{
+			strings.put(string, string);
+			canonicalString = string;
+		}
+		
+		return canonicalString;
+	}
+	
+	// Parses the lines of a chunk into student, course and group fields (or null for blank lines)
+	private static class ChunkParser implements Callable<List<String[]>>
+	{
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+		private final int[] columns;
+		
+		public ChunkParser(ByteBuffer buffer, int start, int end, int[] columns)
+		{
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.columns = columns;
+		}
+		
+		@Override
+		public List<String[]> call()
+		{
+			List<String[]> rows = new ArrayList<>();
+			
+			for (int lineStart = start; lineStart < end; )
+			{
+				int lineEnd = Math.min(lineEnd(buffer, lineStart), end);
+				List<String> fields = parseLine(buffer, lineStart, lineEnd, rows.size() + 1);
+				
+				if (fields.size() == 1 && fields.get(0).trim().isEmpty())
+				{
+					rows.add(null);
+				}
+				else
+				{
+					String[] row = new String[columns.length];
+					
+					for (int i = 0; i < columns.length; i++)
+					{
+						if (columns[i] >= fields.size() || fields.get(columns[i]).trim().isEmpty())
+						{
+							throw new ChunkParseException(rows.size() + 1, "Missing " + COLUMNS[i]);
+						}
+						
+						row[i] = fields.get(columns[i]).trim();
+					}
+					
+					rows.add(row);
+				}
+				
+				lineStart = lineEnd + 1;
+			}
+			
+			return rows;
+		}
+	}
+	
+	// Carries the line number within its chunk, as the line number within the file is only known once earlier chunks are parsed
+	private static class ChunkParseException extends IllegalStateException
+	{
+		private static final long serialVersionUID = 1L;
+		public final int line;
+		
+		public ChunkParseException(int line, String message)
+		{
+			super(message);
+			this.line = line;
+		}
+	}
+}
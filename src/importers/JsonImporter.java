@@ -1,53 +1,149 @@
 package importers;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
+import importers.ProblemSpec.EnrollmentSpec;
+import importers.ProblemSpec.SessionSpec;
+import importers.ProblemSpec.StudentSpec;
+import importers.ProblemSpec.TimeSpec;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import model.Course;
-import model.Day;
-import model.Room;
-import model.Session;
-import model.Slot;
 import model.Model;
-import org.javatuples.Pair;
 
-public class JsonImporter implements Importer
+// Imports problems from JSON input files. The file is parsed into a ProblemSpec once, on the first import, and every week is imported from that.
+// Unless disabled, the spec is also cached in a binary file next to the input file (with ".cache" appended), which is loaded instead of parsing the
+// input file as long as the input file does not change.
+public class JsonImporter implements SpecImporter
 {
-	private static final ObjectMapper jsonMapper = new ObjectMapper();
-	
-	static
-	{
-		jsonMapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
-	}
+	private static final String CACHE_EXTENSION = ".cache";
 	
 	private final String filePath;
+	private final boolean useCache;
+	private final boolean checkCourseReferences;
+	private ProblemSpec spec = null;
 
 	public JsonImporter(String filePath)
+	{
+		this(filePath, true);
+	}
+	
+	public JsonImporter(String filePath, boolean useCache)
+	{
+		this(filePath, useCache, true);
+	}
+	
+	// Students may attend courses specified in other files when several files are merged. The merge then checks the references instead.
+	JsonImporter(String filePath, boolean useCache, boolean checkCourseReferences)
 	{
 		this.filePath = filePath;
+		this.useCache = useCache;
+		this.checkCourseReferences = checkCourseReferences;
 	}
 
 	@Override
 	public int importProblem(Model model)
 	{
-		try
+		return spec().importProblem(model);
+	}
+	
+	// Returns the contents of the input file, loading it from the cache or parsing it if not done already
+	@Override
+	public ProblemSpec spec()
+	{
+		if (spec == null)
 		{
-			JsonNode jsonRoot = jsonMapper.readTree(new File(filePath));
+			File cacheFile = new File(filePath + CACHE_EXTENSION);
+			ProblemSpec newSpec = (useCache ? SpecCache.load(new File(filePath), cacheFile) : null);
+			
+			if (newSpec == null)
+			{
+				newSpec = parse();
+				
+				if (useCache)
+				{
+					try
+					{
+						SpecCache.save(new File(filePath), newSpec, cacheFile);
+					}
+					catch (IOException ex)
+					{
+						System.out.println("Warning: Could not write input cache '" + cacheFile + "': " + ex);	// Not fatal, as the cache only saves time
+					}
+				}
+			}
+			
+			if (checkCourseReferences)
+			{
+				assertCoursesExist(newSpec, newSpec.courseNames());
+			}
+			
+			spec = newSpec;
+		}
+		
+		return spec;
+	}
+	
+	// The file is streamed, so only one course or student is held as a tree at a time. Peak memory is thus bounded by the size of the
+	// resulting spec rather than the size of the file.
+	private ProblemSpec parse()
+	{
+		ObjectMapper jsonMapper = new ObjectMapper();		// Created here rather than statically, so loading a cached spec does not pay for setting up Jackson
+		jsonMapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+		
+		try (JsonParser parser = jsonMapper.getFactory().createParser(new File(filePath)))
+		{
+			ProblemSpec newSpec = new ProblemSpec();
+			Map<String, String> strings = new HashMap<>();		// Course and group names are repeated for every enrollment, so equal strings are shared
+			boolean coursesParsed = false;
+			boolean studentsParsed = false;
+			
+			if (parser.nextToken() == JsonToken.START_OBJECT)
+			{
+				while (parser.nextToken() == JsonToken.FIELD_NAME)
+				{
+					String fieldName = parser.getCurrentName();
+					parser.nextToken();
+					
+					if (fieldName.equals("courses") && !coursesParsed)
+					{
+						parseCourses(parser, newSpec, strings);
+						coursesParsed = true;
+					}
+					else if (fieldName.equals("students") && !studentsParsed)
+					{
+						parseStudents(parser, newSpec, strings);
+						studentsParsed = true;
+					}
+					else if (fieldName.equals("courses") || fieldName.equals("students"))
+					{
+						throw new IllegalStateException("Error while parsing input file: The field '" + fieldName + "' occurs more than once.");
+					}
+					else
+					{
+						parser.skipChildren();
+					}
+				}
+			}
 			
-			int importedSessions = importCourses(model, jsonRoot);
-			importStudents(model, jsonRoot);
+			// Fail the usual way on a missing courses section. The students section may be left out when enrollments come from elsewhere (see CsvEnrollmentImporter).
+			if (!coursesParsed)
+			{
+				assertObject(null, new Path("courses"));
+			}
 			
-			return importedSessions;
+			return newSpec;
 		}
 		catch (IOException ex)
 		{
@@ -55,219 +151,225 @@ public class JsonImporter implements Importer
 		}
 	}
 	
-	private static int importCourses(Model model, JsonNode jsonRoot)
+	private static void parseCourses(JsonParser parser, ProblemSpec problemSpec, Map<String, String> strings) throws IOException
 	{
 		// Parse courses
 		Path coursesPath = new Path("courses");
-		int importedSessions = 0;
-
-		for (Iterator<Map.Entry<String, JsonNode>> iter = assertObject(jsonRoot.get("courses"), coursesPath).fields(); iter.hasNext(); )
+		Set<String> courseNames = new HashSet<>();
+		
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
 		{
-			Map.Entry<String, JsonNode> courseEntry = iter.next();
-			String courseName = courseEntry.getKey();
+			assertObject(parser.<JsonNode>readValueAsTree(), coursesPath);
+		}
+		
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String courseName = canonical(strings, parser.getCurrentName());
 			Path coursePath = new Path(coursesPath, courseName);
-			JsonNode courseSpecs = assertArray(courseEntry.getValue(), coursePath);
+			parser.nextToken();
+			JsonNode courseSpecs = assertArray(parser.<JsonNode>readValueAsTree(), coursePath);
+			
+			if (!courseNames.add(courseName))
+			{
+				throw new IllegalStateException("Error while parsing input file: The course '" + coursePath + "' is specified more than once.");
+			}
 
 			for (int specIndex = 0; specIndex < courseSpecs.size(); specIndex++)
 			{
 				// For every scheduling line for this course
 				Path specPath = new Path(coursePath, specIndex);
-				JsonNode spec = assertObject(courseSpecs.get(specIndex), specPath);
-
-				for (JsonNode weekSpec : listifyNodeContents(spec.get("weeks")))
-				{
-					// Loop over each week and only continue parsing the specification for the week for which we are scheduling (if it exists at all)
-					if (assertInteger(weekSpec, new Path(specPath, "weeks")) != model.week)
-					{
-						continue;
-					}
-
-					if (spec.has("shared") && assertBoolean(spec.get("shared"), new Path(specPath, "shared")))
-					{
-						// Create a shared session
-						Set<String> groupStrings = new HashSet<>();
-						
-						for (JsonNode group : listifyNodeContents(spec.get("groups")))
-						{
-							groupStrings.add(assertString(group, new Path(specPath, "groups")));
-						}
-						
-						Session session = parseSession(model, spec, specPath, model.findAddCourse(courseName), groupStrings);
-						importedSessions++;
-						
-						// Assign staffs to session (if any)
-						if (spec.has("staff"))
-						{
-							List<JsonNode> staffs = listifyNodeContents(spec.get("staff"));
-							
-							for (JsonNode staff : staffs)
-							{
-								session.addStaff(model.findAddPerson(assertString(staff, new Path(specPath, "staff"))));
-							}
-						}
-					}
-					else
-					{
-						// Create separate session for every group
-						List<JsonNode> groups = listifyNodeContents(spec.get("groups"));
-						
-						for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++)
-						{
-							Session session = parseSession(model, spec, specPath, model.findAddCourse(courseName), assertString(groups.get(groupIndex), new Path(specPath, "groups")));
-							importedSessions++;
-							
-							// Assign staffs to session (if any)
-							if (spec.has("staff"))
-							{
-								List<JsonNode> staffs = listifyNodeContents(spec.get("staff"));
-
-								if (staffs.size() == 1)
-								{
-									session.addStaff(model.findAddPerson(assertString(staffs.get(0), new Path(specPath, "staff"))));
-								}
-								else
-								{
-									if (staffs.size() != groups.size())
-									{
-										throw new IllegalStateException("Error while parsing input file: Staff list at " + new Path(specPath, "staff") + " must be one of the following: (1) Non-existing (2) A single staff to be used for all groups (3) A list of a staff, one staff per group (4) A list of lists of staffs, one list of staff per group");
-									}
-
-									for (JsonNode staff : listifyNodeContents(staffs.get(groupIndex)))
-									{
-										session.addStaff(model.findAddPerson(assertString(staff, new Path(specPath, "staff"))));
-									}
-								}
-							}
-						}
-					}
-				}
+				problemSpec.addSession(parseSession(courseName, assertObject(courseSpecs.get(specIndex), specPath), specPath, strings));
 			}
 		}
 		
-		return importedSessions;
+		assertNonEmpty(courseNames.size(), coursesPath);
 	}
 	
-	private static Session parseSession(Model model, JsonNode spec, Path specPath, Course course, String group)
+	private static SessionSpec parseSession(String courseName, JsonNode spec, Path specPath, Map<String, String> strings)
 	{
-		return parseSession(model, spec, specPath, course, new HashSet<>(Arrays.asList(group)));
-	}
+		// Weeks may be listed several times, giving several sessions in those weeks
+		List<Integer> weeks = new ArrayList<>();
 		
-	private static Session parseSession(Model model, JsonNode spec, Path specPath, Course course, Set<String> groups)
-	{
-		// Fetch session details
-		String roomString = assertStringOrNull(spec.get("room"), new Path(specPath, "room"));
-		Room room = (roomString == null ? null : model.findRoom(roomString));
+		for (JsonNode weekSpec : listifyNodeContents(spec.get("weeks")))
+		{
+			weeks.add(assertInteger(weekSpec, new Path(specPath, "weeks")));
+		}
 		
+		// Fetch session details
+		String room = assertStringOrNull(spec.get("room"), new Path(specPath, "room"));
 		String type = assertStringOrNull(spec.get("type"), new Path(specPath, "type"));
 		String title = assertStringOrNull(spec.get("title"), new Path(specPath, "title"));
 		int length = assertInteger(spec.get("length"), new Path(specPath, "length"));
-		
-		// Create session
 		int roomBreak = !spec.has("roombreak") ? 0 : assertInteger(spec.get("roombreak"), new Path(specPath, "roombreak"));
-		Session session = model.addSession(course, type, title, groups, length, room, roomBreak);
-
-		// Handle forced times (whitelisting)
-		if (spec.has("times"))
+		boolean shared = spec.has("shared") && assertBoolean(spec.get("shared"), new Path(specPath, "shared"));
+		
+		List<String> groups = new ArrayList<>();
+		
+		for (JsonNode group : listifyNodeContents(spec.get("groups")))
 		{
-			addSessionTimes(model, session, true, spec.get("times"), new Path(specPath, "times"));
+			groups.add(canonical(strings, assertString(group, new Path(specPath, "groups"))));
 		}
-
-		// Handle denied times (blacklisting)
-		if (spec.has("denytimes"))
+		
+		// Staffs (if any) are either shared by all sessions or given per group
+		List<List<String>> staffs = new ArrayList<>();
+		
+		if (spec.has("staff"))
 		{
-			addSessionTimes(model, session, false, spec.get("denytimes"), new Path(specPath, "denytimes"));
+			List<JsonNode> staffNodes = listifyNodeContents(spec.get("staff"));
+			
+			if (shared)
+			{
+				staffs.add(parseStaffs(staffNodes, specPath));
+			}
+			else if (staffNodes.size() == 1)
+			{
+				staffs.add(Arrays.asList(assertString(staffNodes.get(0), new Path(specPath, "staff"))));
+			}
+			else
+			{
+				if (staffNodes.size() != groups.size())
+				{
+					throw new IllegalStateException("Error while parsing input file: Staff list at " + new Path(specPath, "staff") + " must be one of the following: (1) Non-existing (2) A single staff to be used for all groups (3) A list of a staff, one staff per group (4) A list of lists of staffs, one list of staff per group");
+				}
+				
+				for (JsonNode groupStaffs : staffNodes)
+				{
+					staffs.add(parseStaffs(listifyNodeContents(groupStaffs), specPath));
+				}
+			}
+		}
+		
+		// Handle forced times (whitelisting) and denied times (blacklisting)
+		List<TimeSpec> times = (spec.has("times") ? parseTimes(spec.get("times"), new Path(specPath, "times")) : Collections.<TimeSpec>emptyList());
+		List<TimeSpec> denyTimes = (spec.has("denytimes") ? parseTimes(spec.get("denytimes"), new Path(specPath, "denytimes")) : Collections.<TimeSpec>emptyList());
+		
+		return new SessionSpec(courseName, weeks, type, title, length, room, roomBreak, groups, shared, staffs, times, denyTimes);
+	}
+	
+	private static List<String> parseStaffs(List<JsonNode> staffNodes, Path specPath)
+	{
+		List<String> staffs = new ArrayList<>();
+		
+		for (JsonNode staff : staffNodes)
+		{
+			staffs.add(assertString(staff, new Path(specPath, "staff")));
 		}
 		
-		return session;
+		return staffs;
 	}
 	
-	private static void addSessionTimes(Model model, Session session, boolean whiteListing, JsonNode timeSpecs, Path timeSpecPath)
+	private static List<TimeSpec> parseTimes(JsonNode timeSpecs, Path timeSpecPath)
 	{
+		List<TimeSpec> times = new ArrayList<>();
+		
 		for (JsonNode timeSpec : listifyNodeContents(timeSpecs))
 		{
 			assertObject(timeSpec, timeSpecPath);
-
-			// Combine all specified days and hours
+			List<String> days = new ArrayList<>();
+			List<Integer> hours = new ArrayList<>();
+			
+			// All specified days and hours are combined
 			for (JsonNode daySpec : listifyNodeContents(timeSpec.get("days")))
 			{
-				for (JsonNode hourSpec : listifyNodeContents(timeSpec.get("hours")))
-				{
-					Day day = model.findDay(assertStringOrNull(daySpec, new Path(timeSpecPath, "days")));
-					Slot slot = model.findSlot(assertIntegerOrNull(hourSpec, new Path(timeSpecPath, "hours")));
-					
-					if (whiteListing)
-					{
-						session.whitelistTime(new Pair<>(day, slot));
-					}
-					else
-					{
-						session.blacklistTime(new Pair<>(day, slot));
-					}
-				}
+				days.add(assertStringOrNull(daySpec, new Path(timeSpecPath, "days")));
 			}
+			
+			for (JsonNode hourSpec : listifyNodeContents(timeSpec.get("hours")))
+			{
+				hours.add(assertIntegerOrNull(hourSpec, new Path(timeSpecPath, "hours")));
+			}
+			
+			times.add(new TimeSpec(days, hours));
 		}
+		
+		return times;
 	}
 	
-	private static void importStudents(Model model, JsonNode jsonRoot)
+	private static void parseStudents(JsonParser parser, ProblemSpec problemSpec, Map<String, String> strings) throws IOException
 	{
 		// Parse students
 		Path studentsPath = new Path("students");
+		Set<String> studentNames = new HashSet<>();
+		
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+		{
+			assertObject(parser.<JsonNode>readValueAsTree(), studentsPath);
+		}
 
-		for (Iterator<Map.Entry<String, JsonNode>> iter = assertObject(jsonRoot.get("students"), studentsPath).fields(); iter.hasNext(); )
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
 		{
-			Map.Entry<String, JsonNode> studentEntry = iter.next();
-			String studentName = studentEntry.getKey();
+			String studentName = parser.getCurrentName();
 			Path studentPath = new Path(studentsPath, studentName);
+			parser.nextToken();
+			JsonNode student = parser.readValueAsTree();
+			
+			if (!studentNames.add(studentName))
+			{
+				throw new IllegalStateException("Error while parsing input file: The student '" + studentPath + "' is specified more than once.");
+			}
 			
 			// Parse attendance specs
 			Path attendancePath = new Path(studentPath, "attendance");
-			JsonNode studentAttendance = assertArray(studentEntry.getValue().get("attendance"), attendancePath);
+			JsonNode studentAttendance = assertArray(student.get("attendance"), attendancePath);
+			List<EnrollmentSpec> attendance = new ArrayList<>();
 			
 			for (int specIndex = 0; specIndex < studentAttendance.size(); specIndex++)
 			{
 				// For every course enrollment specified for this student
 				Path specPath = new Path(attendancePath, specIndex);
 				JsonNode spec = assertObject(studentAttendance.get(specIndex), specPath);
-				String courseName = assertString(spec.get("course"), new Path(specPath, "course"));
+				String courseName = canonical(strings, assertString(spec.get("course"), new Path(specPath, "course")));
+				List<String> groups = new ArrayList<>();
 				
-				if (!jsonRoot.get("courses").has(courseName))
+				for (JsonNode group : listifyNodeContents(spec.get("groups")))
 				{
-					throw new IllegalStateException("Error in input file: Could not find specifications for course '" + spec.get("course").textValue() + "' referenced at " + new Path(specPath, "course"));
+					groups.add(canonical(strings, assertString(group, new Path(specPath, "groups"))));
 				}
 				
-				// If the course doesn't exist in this model (read: has no sessions scheduled for this week), we just ignore the spec
-				Course course =  model.findCourse(courseName);
-				
-				if (course != null)
-				{
-					// Add student to sessions for the groups to which he is enrolled
-					for (JsonNode group : listifyNodeContents(spec.get("groups")))
-					{
-						for (Session session :course.sessions(assertString(group, new Path(specPath, "groups"))))
-						{
-							session.addStudent(model.findAddPerson(studentName));
-						}
-					}
-				}
+				attendance.add(new EnrollmentSpec(courseName, groups));
 			}
 			
 			// Parse student weight (if any)
-			if (studentEntry.getValue().has("weight"))
-			{
-				model.findAddPerson(studentName).weight = assertDouble(studentEntry.getValue().get("weight"), new Path(studentPath, "weight"));
-			}
+			Double weight = (student.has("weight") ? assertDouble(student.get("weight"), new Path(studentPath, "weight")) : null);
+			
+			problemSpec.addStudent(new StudentSpec(studentName, weight, attendance));
 		}
 		
-		// Double-check that all sessions have students enrolled to them
-		for (Session session : model.sessions())
+		assertNonEmpty(studentNames.size(), studentsPath);
+	}
+	
+	// Courses may be specified after the students referencing them, so references are checked once everything is parsed (or loaded from the cache)
+	private static void assertCoursesExist(ProblemSpec problemSpec, Set<String> courseNames)
+	{
+		Path studentsPath = new Path("students");
+		
+		for (StudentSpec student : problemSpec.students())
 		{
-			if (session.students.isEmpty())
+			for (int specIndex = 0; specIndex < student.attendance.size(); specIndex++)
 			{
-				throw new IllegalStateException("Error in input file: No students are registered for session " + session);
+				String courseName = student.attendance.get(specIndex).course;
+				
+				if (!courseNames.contains(courseName))
+				{
+					throw new IllegalStateException("Error in input file: Could not find specifications for course '" + courseName + "' referenced at " + new Path(new Path(new Path(new Path(studentsPath, student.name), "attendance"), specIndex), "course"));
+				}
 			}
 		}
 	}
 	
+	private static String canonical(Map<String, String> strings, String string)
+	{
+		String canonicalString = strings.get(string);
+		
+		if (canonicalString == null)
+		{
+			strings.put(string, string);
+			canonicalString = string;
+		}
+		
+		return canonicalString;
+	}
+	
 	private static List<JsonNode> listifyNodeContents(JsonNode node)
 	{
 		List<JsonNode> list = new LinkedList<>();
@@ -301,7 +403,12 @@ public class JsonImporter implements Importer
 	
 	private static void assertNonEmpty(JsonNode node, Path path)
 	{
-		if (node.size() == 0)
+		assertNonEmpty(node.size(), path);
+	}
+	
+	private static void assertNonEmpty(int size, Path path)
+	{
+		if (size == 0)
 		{
 			throw new IllegalStateException("Error while parsing input file: The field '" + path + "' is empty.");
 		}
@@ -0,0 +1,234 @@
+package importers;
+
+import importers.ProblemSpec.EnrollmentSpec;
+import importers.ProblemSpec.SessionSpec;
+import importers.ProblemSpec.StudentSpec;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.Model;
+
+// Imports a problem split over several JSON input files, like one per department. The files are parsed in parallel (each through JsonImporter,
+// so they are cached individually) and merged in the order given. A course may be specified in several files only if the specifications are identical.
+// Students may attend courses of other files and may occur in several files, in which case their enrollments are combined. Their weights must agree.
+// Staff are persons like students, so staff shared between departments simply become the same person. Rooms are part of the model, not the input.
+public class MultiFileImporter implements SpecImporter
+{
+	private static final String INPUT_EXTENSION = ".json";
+	
+	private final List<File> files = new ArrayList<>();
+	private ProblemSpec spec = null;
+	
+	// Every path is either an input file or a directory, whose input files (ending in .json) are imported in order of name
+	public MultiFileImporter(List<String> paths)
+	{
+		for (String path : paths)
+		{
+			File file = new File(path);
+			
+			if (file.isDirectory())
+			{
+				File[] directoryFiles = file.listFiles(new FileFilter()
+				{
+					@Override
+					public boolean accept(File directoryFile)
+					{
+						return directoryFile.isFile() && directoryFile.getName().endsWith(INPUT_EXTENSION);
+					}
+				});
+				
+				Arrays.sort(directoryFiles);
+				files.addAll(Arrays.asList(directoryFiles));
+			}
+			else
+			{
+				files.add(file);
+			}
+		}
+		
+		if (files.isEmpty())
+		{
+			throw new IllegalArgumentException("No input files found in " + paths);
+		}
+	}
+	
+	@Override
+	public int importProblem(Model model)
+	{
+		return spec().importProblem(model);
+	}
+	
+	// Returns the merged contents of all input files, parsing them if not done already
+	@Override
+	public ProblemSpec spec()
+	{
+		if (spec == null)
+		{
+			spec = merge(parseAll());
+		}
+		
+		return spec;
+	}
+	
+	private List<ProblemSpec> parseAll()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+		
+		try
+		{
+			List<Future<ProblemSpec>> futures = new ArrayList<>();
+			
+			for (final File file : files)
+			{
+				futures.add(executor.submit(new Callable<ProblemSpec>()
+				{
+					@Override
+					public ProblemSpec call()
+					{
+						return new JsonImporter(file.getPath(), true, false).spec();
+					}
+				}));
+			}
+			
+			List<ProblemSpec> specs = new ArrayList<>();
+			
+			for (int i = 0; i < futures.size(); i++)
+			{
+				try
+				{
+					specs.add(futures.get(i).get());
+				}
+				catch (ExecutionException ex)
+				{
+					throw new IllegalStateException("Error in input file '" + files.get(i) + "': " + ex.getCause().getMessage(), ex.getCause());
+				}
+			}
+			
+			return specs;
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	private ProblemSpec merge(List<ProblemSpec> specs)
+	{
+		ProblemSpec merged = new ProblemSpec();
+		
+		// Courses are matched case-insensitively, as they would end up as the same course in the model
+		Map<String, List<SessionSpec>> courseSessions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Map<String, File> courseFiles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		
+		for (int i = 0; i < specs.size(); i++)
+		{
+			Map<String, List<SessionSpec>> fileCourseSessions = new LinkedHashMap<>();		// By the first spelling of each course name in the file
+			Map<String, String> fileCourseNames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			
+			for (SessionSpec session : specs.get(i).sessions())
+			{
+				if (!fileCourseNames.containsKey(session.course))
+				{
+					fileCourseNames.put(session.course, session.course);
+					fileCourseSessions.put(session.course, new ArrayList<SessionSpec>());
+				}
+				
+				fileCourseSessions.get(fileCourseNames.get(session.course)).add(session);
+			}
+			
+			for (Map.Entry<String, List<SessionSpec>> course : fileCourseSessions.entrySet())
+			{
+				List<SessionSpec> existingSessions = courseSessions.get(course.getKey());
+				
+				if (existingSessions == null)
+				{
+					courseSessions.put(course.getKey(), course.getValue());
+					courseFiles.put(course.getKey(), files.get(i));
+					
+					for (SessionSpec session : course.getValue())
+					{
+						merged.addSession(session);
+					}
+				}
+				else if (!sameSessions(existingSessions, course.getValue()))
+				{
+					throw new IllegalStateException("Error in input files: Conflicting specifications of course '" + course.getKey() + "' in '" + courseFiles.get(course.getKey()) + "' and '" + files.get(i) + "'");
+				}
+			}
+		}
+		
+		// Students are kept as they are, as importing students with the same name several times adds them to the sessions of all their enrollments
+		Set<String> courseNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		courseNames.addAll(merged.courseNames());
+		Map<String, Double> studentWeights = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Map<String, File> studentWeightFiles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		
+		for (int i = 0; i < specs.size(); i++)
+		{
+			for (StudentSpec student : specs.get(i).students())
+			{
+				for (EnrollmentSpec enrollment : student.attendance)
+				{
+					if (!courseNames.contains(enrollment.course))
+					{
+						throw new IllegalStateException("Error in input file '" + files.get(i) + "': Could not find specifications for course '" + enrollment.course + "' attended by '" + student.name + "' in any input file");
+					}
+				}
+				
+				if (student.weight != null)
+				{
+					if (studentWeightFiles.containsKey(student.name) && !Objects.equals(studentWeights.get(student.name), student.weight))
+					{
+						throw new IllegalStateException("Error in input files: Conflicting weights of student '" + student.name + "' in '" + studentWeightFiles.get(student.name) + "' and '" + files.get(i) + "'");
+					}
+					
+					studentWeights.put(student.name, student.weight);
+					studentWeightFiles.put(student.name, files.get(i));
+				}
+				
+				merged.addStudent(student);
+			}
+		}
+		
+		return merged;
+	}
+	
+	// Whether two lists of session specifications of a course are the same, apart from the case of the course name
+	private static boolean sameSessions(List<SessionSpec> sessions, List<SessionSpec> otherSessions)
+	{
+		if (sessions.size() != otherSessions.size())
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < sessions.size(); i++)
+		{
+			SessionSpec session = sessions.get(i);
+			SessionSpec other = otherSessions.get(i);
+			
+			if (!session.course.equalsIgnoreCase(other.course) || !session.equals(new SessionSpec(session.course, other.weeks, other.type, other.title, other.length, other.room, other.roomBreak, other.groups, other.shared, other.staffs, other.times, other.denyTimes)))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,398 @@
+package importers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import model.Course;
+import model.Day;
+import model.Model;
+import model.Person;
+import model.Room;
+import model.Session;
+import model.Slot;
+import org.javatuples.Pair;
+
+// The contents of an input file in a form independent of any model, with the session specifications indexed by week.
+// Parsing an input file once into this form lets the model of every week be built without parsing the file again.
+// Everything is validated while parsing, so building a model only fails on model-dependent things like unknown rooms.
+public class ProblemSpec implements Importer
+{
+	private final List<SessionSpec> sessions = new ArrayList<>();
+	private final Map<Integer, List<SessionSpec>> weekSessions = new HashMap<>();	// A specification occurs once per time its week is listed
+	private final List<StudentSpec> students = new ArrayList<>();
+	
+	public void addSession(SessionSpec session)
+	{
+		sessions.add(session);
+		
+		for (int week : session.weeks)
+		{
+			List<SessionSpec> sessions = weekSessions.get(week);
+			
+			if (sessions == null)
+			{
+				sessions = new ArrayList<>();
+				weekSessions.put(week, sessions);
+			}
+			
+			sessions.add(session);
+		}
+	}
+	
+	public void addStudent(StudentSpec student)
+	{
+		students.add(student);
+	}
+	
+	// All session specifications in the order they were added
+	public List<SessionSpec> sessions()
+	{
+		return Collections.unmodifiableList(sessions);
+	}
+	
+	// The exact names of all courses having session specifications
+	public Set<String> courseNames()
+	{
+		Set<String> courseNames = new HashSet<>();
+		
+		for (SessionSpec session : sessions)
+		{
+			courseNames.add(session.course);
+		}
+		
+		return courseNames;
+	}
+	
+	// The session specifications of a week in the order they were added. Empty if nothing is scheduled that week.
+	public List<SessionSpec> sessions(int week)
+	{
+		List<SessionSpec> sessions = weekSessions.get(week);
+		return (sessions == null ? Collections.<SessionSpec>emptyList() : Collections.unmodifiableList(sessions));
+	}
+	
+	public List<StudentSpec> students()
+	{
+		return Collections.unmodifiableList(students);
+	}
+	
+	// Everything the model of a week is built from, in a form that can be compared with equals() to the signature of the same week of another spec.
+	// Equal signatures give equal models. The weeks a session is listed for only matter through whether it is in sessions(week), so they are left
+	// out, as are enrollments in courses without sessions that week and students without any enrollments left (these do not affect the model).
+	public List<Object> weekSignature(int week)
+	{
+		List<Object> signature = new ArrayList<>();
+		Set<String> courseNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		
+		for (SessionSpec session : sessions(week))
+		{
+			signature.add(Arrays.asList(session.course, session.type, session.title, session.length, session.room, session.roomBreak, session.groups, session.shared, session.staffs, session.times, session.denyTimes));
+			courseNames.add(session.course);
+		}
+		
+		for (StudentSpec student : students)
+		{
+			List<EnrollmentSpec> attendance = new ArrayList<>();
+			
+			for (EnrollmentSpec enrollment : student.attendance)
+			{
+				if (courseNames.contains(enrollment.course))
+				{
+					attendance.add(enrollment);
+				}
+			}
+			
+			if (!attendance.isEmpty())
+			{
+				signature.add(new StudentSpec(student.name, student.weight, attendance));
+			}
+		}
+		
+		return signature;
+	}
+	
+	// Adds the courses, sessions and students of the week of the model to it
+	@Override
+	public int importProblem(Model model)
+	{
+		// Courses and persons are looked up case-insensitively, like Model.findAddCourse() and Model.findAddPerson() do, but without scanning lists
+		Map<String, Course> courses = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Map<String, Person> persons = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		
+		for (Course course : model.courses())
+		{
+			courses.put(course.name, course);
+		}
+		
+		for (Person person : model.persons())
+		{
+			persons.put(person.name, person);
+		}
+		
+		// Create sessions
+		int importedSessions = 0;
+		
+		for (SessionSpec spec : sessions(model.week))
+		{
+			Course course = courses.get(spec.course);
+			
+			if (course == null)
+			{
+				course = model.addCourse(spec.course);
+				courses.put(course.name, course);
+			}
+			
+			if (spec.shared)
+			{
+				// Create a shared session
+				Session session = createSession(model, spec, course, new HashSet<>(spec.groups));
+				importedSessions++;
+				addStaffs(model, persons, session, spec.staffs.isEmpty() ? Collections.<String>emptyList() : spec.staffs.get(0));
+			}
+			else
+			{
+				// Create separate session for every group
+				for (int groupIndex = 0; groupIndex < spec.groups.size(); groupIndex++)
+				{
+					Session session = createSession(model, spec, course, new HashSet<>(Arrays.asList(spec.groups.get(groupIndex))));
+					importedSessions++;
+					addStaffs(model, persons, session, spec.staffs.isEmpty() ? Collections.<String>emptyList() : spec.staffs.get(spec.staffs.size() == 1 ? 0 : groupIndex));
+				}
+			}
+		}
+		
+		// Add students
+		for (StudentSpec student : students)
+		{
+			for (EnrollmentSpec enrollment : student.attendance)
+			{
+				// If the course doesn't exist in this model (read: has no sessions scheduled for this week), we just ignore the enrollment
+				Course course = courses.get(enrollment.course);
+				
+				if (course != null)
+				{
+					// Add student to sessions for the groups to which he is enrolled
+					for (String group : enrollment.groups)
+					{
+						for (Session session : course.sessions(group))
+						{
+							session.addStudent(findAddPerson(model, persons, student.name));
+						}
+					}
+				}
+			}
+			
+			if (student.weight != null)
+			{
+				findAddPerson(model, persons, student.name).weight = student.weight;
+			}
+		}
+		
+		// Double-check that all sessions have students enrolled to them
+		for (Session session : model.sessions())
+		{
+			if (session.students.isEmpty())
+			{
+				throw new IllegalStateException("Error in input file: No students are registered for session " + session);
+			}
+		}
+		
+		return importedSessions;
+	}
+	
+	private static Session createSession(Model model, SessionSpec spec, Course course, Set<String> groups)
+	{
+		Room room = (spec.room == null ? null : model.findRoom(spec.room));
+		Session session = model.addSession(course, spec.type, spec.title, groups, spec.length, room, spec.roomBreak);
+		
+		// Handle forced times (whitelisting)
+		for (TimeSpec time : spec.times)
+		{
+			for (Pair<Day, Slot> dayAndSlot : time.resolve(model))
+			{
+				session.whitelistTime(dayAndSlot);
+			}
+		}
+		
+		// Handle denied times (blacklisting)
+		for (TimeSpec time : spec.denyTimes)
+		{
+			for (Pair<Day, Slot> dayAndSlot : time.resolve(model))
+			{
+				session.blacklistTime(dayAndSlot);
+			}
+		}
+		
+		return session;
+	}
+	
+	private static void addStaffs(Model model, Map<String, Person> persons, Session session, List<String> staffs)
+	{
+		for (String staff : staffs)
+		{
+			session.addStaff(findAddPerson(model, persons, staff));
+		}
+	}
+	
+	private static Person findAddPerson(Model model, Map<String, Person> persons, String name)
+	{
+		Person person = persons.get(name);
+		
+		if (person == null)
+		{
+			person = model.addPerson(name);
+			persons.put(name, person);
+		}
+		
+		return person;
+	}
+	
+	// One scheduling line of a course. Its sessions are created once for every time a week is listed in weeks.
+	public static final class SessionSpec
+	{
+		public final String course;
+		public final List<Integer> weeks;
+		public final String type;			// May be null
+		public final String title;			// May be null
+		public final int length;
+		public final String room;			// May be null
+		public final int roomBreak;
+		public final List<String> groups;
+		public final boolean shared;		// Whether all groups share a single session rather than getting one each
+		public final List<List<String>> staffs;	// Empty, a single list of staffs for all sessions or one list per group
+		public final List<TimeSpec> times;
+		public final List<TimeSpec> denyTimes;
+		
+		public SessionSpec(String course, List<Integer> weeks, String type, String title, int length, String room, int roomBreak, List<String> groups, boolean shared, List<List<String>> staffs, List<TimeSpec> times, List<TimeSpec> denyTimes)
+		{
+			this.course = course;
+			this.weeks = weeks;
+			this.type = type;
+			this.title = title;
+			this.length = length;
+			this.room = room;
+			this.roomBreak = roomBreak;
+			this.groups = groups;
+			this.shared = shared;
+			this.staffs = staffs;
+			this.times = times;
+			this.denyTimes = denyTimes;
+		}
+		
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof SessionSpec))
+			{
+				return false;
+			}
+			
+			SessionSpec other = (SessionSpec) object;
+			return course.equals(other.course) && weeks.equals(other.weeks) && Objects.equals(type, other.type) && Objects.equals(title, other.title) && length == other.length && Objects.equals(room, other.room)
+				&& roomBreak == other.roomBreak && groups.equals(other.groups) && shared == other.shared && staffs.equals(other.staffs) && times.equals(other.times) && denyTimes.equals(other.denyTimes);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(course, weeks, type, title, length, room, roomBreak, groups, shared, staffs, times, denyTimes);
+		}
+	}
+	
+	// All combinations of the given days and hours. A null day or hour means any day or hour respectively.
+	public static final class TimeSpec
+	{
+		public final List<String> days;
+		public final List<Integer> hours;
+		
+		public TimeSpec(List<String> days, List<Integer> hours)
+		{
+			this.days = days;
+			this.hours = hours;
+		}
+		
+		@Override
+		public boolean equals(Object object)
+		{
+			return object instanceof TimeSpec && days.equals(((TimeSpec) object).days) && hours.equals(((TimeSpec) object).hours);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(days, hours);
+		}
+		
+		public List<Pair<Day, Slot>> resolve(Model model)
+		{
+			List<Pair<Day, Slot>> times = new ArrayList<>();
+			
+			for (String day : days)
+			{
+				for (Integer hour : hours)
+				{
+					times.add(new Pair<>(model.findDay(day), model.findSlot(hour)));
+				}
+			}
+			
+			return times;
+		}
+	}
+	
+	public static final class StudentSpec
+	{
+		public final String name;
+		public final Double weight;		// Null to keep the default weight
+		public final List<EnrollmentSpec> attendance;
+		
+		public StudentSpec(String name, Double weight, List<EnrollmentSpec> attendance)
+		{
+			this.name = name;
+			this.weight = weight;
+			this.attendance = attendance;
+		}
+		
+		@Override
+		public boolean equals(Object object)
+		{
+			return object instanceof StudentSpec && name.equals(((StudentSpec) object).name) && Objects.equals(weight, ((StudentSpec) object).weight) && attendance.equals(((StudentSpec) object).attendance);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(name, weight, attendance);
+		}
+	}
+	
+	public static final class EnrollmentSpec
+	{
+		public final String course;
+		public final List<String> groups;
+		
+		public EnrollmentSpec(String course, List<String> groups)
+		{
+			this.course = course;
+			this.groups = groups;
+		}
+		
+		@Override
+		public boolean equals(Object object)
+		{
+			return object instanceof EnrollmentSpec && course.equals(((EnrollmentSpec) object).course) && groups.equals(((EnrollmentSpec) object).groups);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(course, groups);
+		}
+	}
+}
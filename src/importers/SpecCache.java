@@ -0,0 +1,379 @@
+package importers;
+
+import importers.ProblemSpec.EnrollmentSpec;
+import importers.ProblemSpec.SessionSpec;
+import importers.ProblemSpec.StudentSpec;
+import importers.ProblemSpec.TimeSpec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stores a parsed ProblemSpec in a compact binary file, so later runs can skip parsing and validating an unchanged input file.
+// The cache records the size and SHA-256 hash of the input file it was made from, and is only used if both still match. Otherwise it is stale and
+// must be rebuilt. Modification times are not trusted, as they are too coarse to notice quick edits and are kept when copying files.
+// All strings are stored once in a table and referenced by index. The file is memory-mapped when loading.
+class SpecCache
+{
+	private static final int MAGIC = 0x54545343;	// "TTSC"
+	private static final int VERSION = 1;
+	private static final int NULL_INDEX = -1;
+	private static final int NULL_HOUR = Integer.MIN_VALUE;
+	
+	private SpecCache()
+	{
+	}
+	
+	// Returns the cached spec of the source file, or null if the cache is missing, stale or unreadable
+	public static ProblemSpec load(File source, File cache)
+	{
+		if (!cache.isFile())
+		{
+			return null;
+		}
+		
+		try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			{
+				return null;
+			}
+			
+			long size = buffer.getLong();
+			byte[] hash = new byte[32];
+			buffer.get(hash);
+			
+			if (size != source.length() || !Arrays.equals(hash, hash(source)))
+			{
+				return null;
+			}
+			
+			return readSpec(buffer);
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			return null;	// Treat unreadable caches as stale, including corrupt ones
+		}
+	}
+	
+	// Writes the spec of the source file to the cache. The cache is replaced atomically, so concurrent runs never load a half-written cache.
+	public static void save(File source, ProblemSpec spec, File cache) throws IOException
+	{
+		Map<String, Integer> strings = collectStrings(spec);
+		File temporaryCache = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+		
+		try
+		{
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryCache))))
+			{
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeLong(source.length());
+				output.write(hash(source));
+				
+				output.writeInt(strings.size());
+				
+				for (String string : strings.keySet())
+				{
+					byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+					output.writeInt(bytes.length);
+					output.write(bytes);
+				}
+				
+				output.writeInt(spec.sessions().size());
+				
+				for (SessionSpec session : spec.sessions())
+				{
+					writeSession(output, strings, session);
+				}
+				
+				output.writeInt(spec.students().size());
+				
+				for (StudentSpec student : spec.students())
+				{
+					output.writeInt(strings.get(student.name));
+					output.writeBoolean(student.weight != null);
+					output.writeDouble(student.weight == null ? 0 : student.weight);
+					output.writeInt(student.attendance.size());
+					
+					for (EnrollmentSpec enrollment : student.attendance)
+					{
+						output.writeInt(strings.get(enrollment.course));
+						writeStrings(output, strings, enrollment.groups);
+					}
+				}
+			}
+			
+			Files.move(temporaryCache.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryCache.toPath());
+		}
+	}
+	
+	private static byte[] hash(File source) throws IOException
+	{
+		try (InputStream input = new FileInputStream(source))
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[1 << 16];
+			
+			for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+			{
+				digest.update(buffer, 0, read);
+			}
+			
+			return digest.digest();
+		}
+		catch (NoSuchAlgorithmException ex)
+		{
+			throw new RuntimeException(ex);		// Every Java platform is required to support SHA-256
+		}
+	}
+	
+	// Gives every distinct string of the spec an index, in order of first occurrence
+	private static Map<String, Integer> collectStrings(ProblemSpec spec)
+	{
+		List<String> strings = new ArrayList<>();
+		
+		for (SessionSpec session : spec.sessions())
+		{
+			strings.add(session.course);
+			strings.add(session.type);
+			strings.add(session.title);
+			strings.add(session.room);
+			strings.addAll(session.groups);
+			
+			for (List<String> staffs : session.staffs)
+			{
+				strings.addAll(staffs);
+			}
+			
+			for (TimeSpec time : session.times)
+			{
+				strings.addAll(time.days);
+			}
+			
+			for (TimeSpec time : session.denyTimes)
+			{
+				strings.addAll(time.days);
+			}
+		}
+		
+		for (StudentSpec student : spec.students())
+		{
+			strings.add(student.name);
+			
+			for (EnrollmentSpec enrollment : student.attendance)
+			{
+				strings.add(enrollment.course);
+				strings.addAll(enrollment.groups);
+			}
+		}
+		
+		Map<String, Integer> indexes = new LinkedHashMap<>();
+		
+		for (String string : strings)
+		{
+			if (string != null && !indexes.containsKey(string))
+			{
+				indexes.put(string, indexes.size());
+			}
+		}
+		
+		return indexes;
+	}
+	
+	private static void writeSession(DataOutputStream output, Map<String, Integer> strings, SessionSpec session) throws IOException
+	{
+		output.writeInt(strings.get(session.course));
+		output.writeInt(session.weeks.size());
+		
+		for (int week : session.weeks)
+		{
+			output.writeInt(week);
+		}
+		
+		output.writeInt(index(strings, session.type));
+		output.writeInt(index(strings, session.title));
+		output.writeInt(session.length);
+		output.writeInt(index(strings, session.room));
+		output.writeInt(session.roomBreak);
+		writeStrings(output, strings, session.groups);
+		output.writeBoolean(session.shared);
+		output.writeInt(session.staffs.size());
+		
+		for (List<String> staffs : session.staffs)
+		{
+			writeStrings(output, strings, staffs);
+		}
+		
+		writeTimes(output, strings, session.times);
+		writeTimes(output, strings, session.denyTimes);
+	}
+	
+	private static void writeTimes(DataOutputStream output, Map<String, Integer> strings, List<TimeSpec> times) throws IOException
+	{
+		output.writeInt(times.size());
+		
+		for (TimeSpec time : times)
+		{
+			writeStrings(output, strings, time.days);
+			output.writeInt(time.hours.size());
+			
+			for (Integer hour : time.hours)
+			{
+				output.writeInt(hour == null ? NULL_HOUR : hour);
+			}
+		}
+	}
+	
+	private static void writeStrings(DataOutputStream output, Map<String, Integer> strings, List<String> values) throws IOException
+	{
+		output.writeInt(values.size());
+		
+		for (String value : values)
+		{
+			output.writeInt(index(strings, value));
+		}
+	}
+	
+	private static int index(Map<String, Integer> strings, String string)
+	{
+		return (string == null ? NULL_INDEX : strings.get(string));
+	}
+	
+	// Reads the length of an array whose elements take up at least the given number of bytes each. A corrupt length would otherwise allocate
+	// a negative or huge array.
+	private static int length(ByteBuffer buffer, int elementBytes)
+	{
+		int length = buffer.getInt();
+		
+		if (length < 0 || length > buffer.remaining() / elementBytes)
+		{
+			throw new BufferUnderflowException();
+		}
+		
+		return length;
+	}
+	
+	private static ProblemSpec readSpec(ByteBuffer buffer)
+	{
+		String[] strings = new String[length(buffer, 4)];
+		
+		for (int i = 0; i < strings.length; i++)
+		{
+			byte[] bytes = new byte[length(buffer, 1)];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		ProblemSpec spec = new ProblemSpec();
+		
+		for (int sessionCount = buffer.getInt(); sessionCount > 0; sessionCount--)
+		{
+			String course = strings[buffer.getInt()];
+			List<Integer> weeks = new ArrayList<>();
+			
+			for (int weekCount = buffer.getInt(); weekCount > 0; weekCount--)
+			{
+				weeks.add(buffer.getInt());
+			}
+			
+			String type = string(strings, buffer.getInt());
+			String title = string(strings, buffer.getInt());
+			int length = buffer.getInt();
+			String room = string(strings, buffer.getInt());
+			int roomBreak = buffer.getInt();
+			List<String> groups = readStrings(buffer, strings);
+			boolean shared = (buffer.get() != 0);
+			List<List<String>> staffs = new ArrayList<>();
+			
+			for (int staffsCount = buffer.getInt(); staffsCount > 0; staffsCount--)
+			{
+				staffs.add(readStrings(buffer, strings));
+			}
+			
+			List<TimeSpec> times = readTimes(buffer, strings);
+			List<TimeSpec> denyTimes = readTimes(buffer, strings);
+			
+			spec.addSession(new SessionSpec(course, weeks, type, title, length, room, roomBreak, groups, shared, staffs, times, denyTimes));
+		}
+		
+		for (int studentCount = buffer.getInt(); studentCount > 0; studentCount--)
+		{
+			String name = strings[buffer.getInt()];
+			boolean hasWeight = (buffer.get() != 0);
+			double weight = buffer.getDouble();
+			List<EnrollmentSpec> attendance = new ArrayList<>();
+			
+			for (int enrollmentCount = buffer.getInt(); enrollmentCount > 0; enrollmentCount--)
+			{
+				String course = strings[buffer.getInt()];
+				attendance.add(new EnrollmentSpec(course, readStrings(buffer, strings)));
+			}
+			
+			spec.addStudent(new StudentSpec(name, (hasWeight ? weight : null), attendance));
+		}
+		
+		return spec;
+	}
+	
+	private static List<TimeSpec> readTimes(ByteBuffer buffer, String[] strings)
+	{
+		List<TimeSpec> times = new ArrayList<>();
+		
+		for (int timeCount = buffer.getInt(); timeCount > 0; timeCount--)
+		{
+			List<String> days = readStrings(buffer, strings);
+			List<Integer> hours = new ArrayList<>();
+			
+			for (int hourCount = buffer.getInt(); hourCount > 0; hourCount--)
+			{
+				int hour = buffer.getInt();
+				hours.add(hour == NULL_HOUR ? null : hour);
+			}
+			
+			times.add(new TimeSpec(days, hours));
+		}
+		
+		return times;
+	}
+	
+	private static List<String> readStrings(ByteBuffer buffer, String[] strings)
+	{
+		List<String> values = new ArrayList<>();
+		
+		for (int count = buffer.getInt(); count > 0; count--)
+		{
+			values.add(string(strings, buffer.getInt()));
+		}
+		
+		return values;
+	}
+	
+	private static String string(String[] strings, int index)
+	{
+		return (index == NULL_INDEX ? null : strings[index]);
+	}
+}
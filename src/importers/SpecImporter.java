@@ -0,0 +1,7 @@
+package importers;
+
+// An importer which reads its input into a ProblemSpec once and imports every week from that
+public interface SpecImporter extends Importer
+{
+	ProblemSpec spec();
+}
@@ -5,9 +5,11 @@ import java.util.List;
 import java.util.Map;
 import org.javatuples.Pair;
 
-// This class allows for storage of a solution to a model and contains a schedule lookup method based on string identifiers.
+// This class allows for storage of a solution to a model and contains schedule lookup methods based on string identifiers.
 // This approach is intentional, as we want to prevent direct access to the underlying model in order to avoid confusion
-// about whether the scope of courses, sessions, ... are problem or model specific.
+// about whether the scope of courses, sessions, ... are problem or model specific. The only exception is scheduledStart(),
+// which takes a session of the model of this solution itself. It is meant for code that already works on that model,
+// like evaluators and exporters, and must not be given sessions of any other model.
 public class Solution
 {
 	private final Model model;
@@ -19,6 +21,12 @@ public class Solution
 		this.schedule = schedule;
 	}
 	
+	// Returns the time at which the given session of the model of this solution starts, or null if it is not scheduled
+	public Pair<Day, Slot> scheduledStart(Session session)
+	{
+		return schedule.get(session);
+	}
+	
 	public boolean attends(String personName, String courseName)
 	{
 		// Look up arguments in model
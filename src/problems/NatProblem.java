@@ -26,7 +26,11 @@ package problems;
 
 import callbacks.gurobi.GapLogger;
 import callbacks.gurobi.IntermediateResultExporter;
+import callbacks.gurobi.SemesterTimeBudget;
 import callbacks.gurobi.StagnationFinisher;
+import callbacks.gurobi.TelemetryLogger;
+import callbacks.gurobi.TerminationFinisher;
+import callbacks.gurobi.TerminationPolicies;
 import constraints.AvoidNoCourseSpreading;
 import constraints.AvoidNoLunchBreaks;
 import constraints.AvoidPersonConflicts;
@@ -39,18 +43,28 @@ import constraints.EnforceRoomBreaks;
 import constraints.EnforceSessionTimeBlacklist;
 import constraints.EnforceSessionTimeWhitelist;
 import constraints.EnforceSessionsScheduled;
+import evaluators.SolutionEvaluator;
 import exporters.Exporter;
 import exporters.HtmlExporter;
+import importers.CsvEnrollmentImporter;
 import importers.Importer;
 import importers.JsonImporter;
+import importers.MultiFileImporter;
+import importers.SpecImporter;
+import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
 import model.Day;
 import model.Model;
 import model.Slot;
 import model.Solution;
 import org.javatuples.Triplet;
 import solvers.GurobiSolver;
+import solvers.Solver;
+import util.JsonLinesSink;
 
 // The following list of TODOs are basically a wishlist of nice-to-have things that could be implemented.
 //  TODO: Consider changing some variables to be continous. Some solvers may run faster this way, others not.
@@ -64,94 +78,206 @@ public class NatProblem
 {
 	private static final String DEFAULT_DATA_FOLDER = "data";
 	private static final String DEFAULT_OUTPUT_FOLDER = "schedules";
+	private static final String DEFAULT_TELEMETRY_FOLDER = "telemetry";	// Every run gets a subfolder with one JSON lines file per week
+	private static final double TELEMETRY_PROGRESS_INTERVAL = 5;
+	static final int SEMESTER_TIME_BUDGET = 60 * 60 * 4;	// Wall-clock seconds shared by all weeks of a run. Weeks get shares according to their size and unused seconds are passed on.
+	
+	// Soft constraint settings shared by the solver and the evaluator. These are usually the penalty per violation.
+	private static final int PERSON_CONFLICT_PENALTY = 32;
+	private static final int COURSE_SPREADING_PENALTY = 4;
+	private static final int UNALIGNED_ALLOCATION_PENALTY = 16;
+	private static final int STABILITY_BONUS = 1;
+	private static final int LUNCH_BREAK_PENALTY = 2;
 	
 	public static void main(String[] args)
 	{
 		System.out.println("TimetableScheduler 1.0 by Christian Funder Sommerlund (zero3@zero3.dk)");
 		
-		if (args.length < 1 || args.length > 3)
+		// Watch mode keeps running after the first run and updates the timetables whenever the input changes
+		boolean watch = (args.length >= 1 && args[0].equals("--watch"));
+		
+		if (watch)
+		{
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+		
+		if (args.length < 1 || args.length > 5)
 		{
-			System.out.println("Usage: <input file> [output folder] [data folder]");
-			System.out.println("Defaults: <none> '" + DEFAULT_OUTPUT_FOLDER + "' '" + DEFAULT_DATA_FOLDER + "'");
+			System.out.println("Usage: [--watch] <input file(s) or folder> [output folder] [data folder] [telemetry folder] [enrollment CSV file]");
+			System.out.println("Several input files or folders are separated by '" + File.pathSeparator + "'");
+			System.out.println("Defaults: <none> '" + DEFAULT_OUTPUT_FOLDER + "' '" + DEFAULT_DATA_FOLDER + "' '" + DEFAULT_TELEMETRY_FOLDER + "' <none>");
 			return;
 		}
 		
 		// Setup importers and exporters
-		System.out.println("Importing timetabling problem from file '" + args[0] + "'");
-		Importer importer = new JsonImporter(args[0]);
+		String inputs = args[0];
+		String enrollmentsFile = (args.length >= 5 ? args[4] : null);
+		System.out.println("Importing timetabling problem from '" + inputs + "'" + (enrollmentsFile != null ? " with enrollments from file '" + enrollmentsFile + "'" : ""));
+		SpecImporter importer = setupImporter(inputs, enrollmentsFile);
 		
 		String exportFolder = (args.length >= 2 ? args[1] : DEFAULT_OUTPUT_FOLDER);
 		System.out.println("Exporting timetables to folder '" + exportFolder + "'");
 		Exporter exporter = new HtmlExporter((args.length >= 3 ? args[2] : DEFAULT_DATA_FOLDER), exportFolder);
 		
+		File telemetryFolder = new File((args.length >= 4 ? args[3] : DEFAULT_TELEMETRY_FOLDER), new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+		System.out.println("Writing solver telemetry to folder '" + telemetryFolder + "'");
+		
+		if (watch)
+		{
+			WatchedSemester.watch(inputs, enrollmentsFile, importer, exporter, telemetryFolder);
+			return;
+		}
+		
+		if (!telemetryFolder.mkdirs())
+		{
+			throw new IllegalStateException("Could not create telemetry directory " + telemetryFolder);
+		}
+		
 		LinkedList<Solution> schedules = new LinkedList<>();
+		List<Model> models = new LinkedList<>();
 		
-		// Now schedule every week found in input file
+		// Setup a model for every week found in input file
 		for (int week = 0; week <= 53; week++)
 		{
-			// Setup our timetabling model
-			Model model = new Model(week, 8);
-			
-			model.addDays("Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday");		// Add days
-			model.addSlots(10);																		// Add a number of time slots. They start from the hour specified to the constructor of Model and is 1 hour long each.
-			model.addRooms("Lab 3 og 4", "Lab 5 og 6", "IMADAs terminalrum", "Fysik øvelseslab");	// Add special rooms. Everything else will be scheduled without a room.
-			
-			importer.importProblem(model);															// Import courses, sessions and students from input file
+			Model model = setupModel(importer, week);
 			
 			// Check if we actually have anything to schedule this week. If not, skip it
-			if (model.sessions().isEmpty())
+			if (!model.sessions().isEmpty())
 			{
-				continue;
+				models.add(model);
 			}
+		}
+		
+		// Share the time available for the whole run between the weeks. We need to know all of them up front to do this.
+		SemesterTimeBudget timeBudget = new SemesterTimeBudget(SEMESTER_TIME_BUDGET, models);
+		
+		// Now schedule every week
+		for (Model model : models)
+		{
+			Solution solution = solveWeek(model, schedules, timeBudget, telemetryFolder, exporter);
 			
-			// Solve using MIP solver
-			try (GurobiSolver solver = new GurobiSolver(model))
+			if (solution != null)
 			{
-				// Setup hard constraints
-				solver.addConstraint(new EnforceSessionsScheduled(solver, model));
-				solver.addConstraint(new EnforceSessionTimeWhitelist(solver, model));
-				solver.addConstraint(new EnforceSessionTimeBlacklist(solver, model));
-				
-				solver.addConstraint(new EnforceNoStaffConflicts(solver, model));
-				solver.addConstraint(new EnforceNoRoomConflicts(solver, model));
-				solver.addConstraint(new EnforceRoomBreaks(solver, model));
-
-				// Setup soft constraints. Last constructor argument is usually the penalty per violation.
-				solver.addConstraint(new AvoidPersonConflicts(solver, model, 32));
-				solver.addConstraint(new AvoidNoCourseSpreading(solver, model, 4));
-				solver.addConstraint(new AvoidUnalignedAllocation(solver, model, 16));
-				solver.addConstraint(new AvoidTimetableInstability(solver, model, schedules, 1));
-				solver.addConstraint(new AvoidNoLunchBreaks(solver, model, Arrays.asList(model.findSlot(11), model.findSlot(12), model.findSlot(13)), 2));
-
-				// Setup soft time constraints. Specifying null as day or slot means any day or slot respectively. Last argument is the penalty.
-				solver.addConstraint(new AvoidUndesiredTimes(solver, model, Arrays.asList
-				(
-					new Triplet<>((Day) null,					model.findSlot(8),	2),
-					new Triplet<>((Day) null,					model.findSlot(16),	1),
-					new Triplet<>((Day) null,					model.findSlot(17),	2),
-					new Triplet<>(model.findDay("Friday"),		model.findSlot(14),	1),
-					new Triplet<>(model.findDay("Friday"),		model.findSlot(15),	1),
-					new Triplet<>(model.findDay("Friday"),		model.findSlot(16),	2),
-					new Triplet<>(model.findDay("Friday"),		model.findSlot(17),	2),
-					new Triplet<>(model.findDay("Saturday"),	(Slot) null,		8)
-				)));
+				schedules.add(solution);
+			}
+			else
+			{
+				break;
+			}
+		}
+	}
+	
+	// Sets up an importer for a single input file, a folder of input files or a list of these separated by the path separator.
+	// The enrollments may be given in a separate CSV file, or null if they are part of the input.
+	public static SpecImporter setupImporter(String inputs, String enrollmentsFile)
+	{
+		SpecImporter importer = (inputs.contains(File.pathSeparator) || new File(inputs).isDirectory() ? new MultiFileImporter(Arrays.asList(inputs.split(File.pathSeparator))) : new JsonImporter(inputs));
+		return (enrollmentsFile != null ? new CsvEnrollmentImporter(importer, enrollmentsFile) : importer);
+	}
+	
+	// Solves a single week given the solutions of the weeks before it and exports the solution. Returns null if no solution was found.
+	public static Solution solveWeek(Model model, List<Solution> schedules, SemesterTimeBudget timeBudget, File telemetryFolder, Exporter exporter)
+	{
+		// Solve using MIP solver
+		try (GurobiSolver solver = new GurobiSolver(model); JsonLinesSink telemetry = new JsonLinesSink(new File(telemetryFolder, "week-" + model.week + ".jsonl")))
+		{
+			solver.setTelemetry(telemetry);
+			solver.setObjectiveAttribution(true);		// List every penalty of the solution found
+			setupConstraints(solver, model, schedules, AvoidNoCourseSpreading.Formulation.TRIGGER);
+			
+			// Setup an evaluator using the same soft constraint settings to cross-check the solution found by the solver
+			SolutionEvaluator evaluator = setupEvaluator(model, schedules);
 
-				// Setup callbacks
-				//solver.addCallback(new IntermediateResultExporter(model, exporter));	// Export solutions as they are found during the solve (and not just the final one)
-				solver.addCallback(new StagnationFinisher(60 * 5));						// Ends the solve early if no better solution is found for the specified amount of seconds
-				solver.addCallback(new GapLogger(5));									// Log progress to finding optimal solution in a nice way. Preferred to raw solver output.
+			// Setup callbacks
+			//solver.addCallback(new IntermediateResultExporter(model, exporter));	// Export solutions as they are found during the solve (and not just the final one)
+			//solver.addCallback(new StagnationFinisher(60 * 5));					// Ends the solve early if no better solution is found for the specified amount of seconds
+			solver.addCallback(timeBudget.weekStarted(model));						// Ends the solve when the week has used its share of the time budget for the run (or stagnates before that)
+			solver.addCallback(new TerminationFinisher(TerminationPolicies.absoluteGapBelowSmallestPenalty()));	// Ends the solve once less than the cheapest penalty can be gained
+			//solver.addCallback(new TerminationFinisher(TerminationPolicies.gapImprovementBelow(0.001, 60 * 10)));	// Ends the solve if the gap improves less than 0.1 percentage points in 10 minutes
+			solver.addCallback(new TelemetryLogger(telemetry, TELEMETRY_PROGRESS_INTERVAL));	// Write solve progress to the telemetry file of the week
+			solver.addCallback(new GapLogger(5));									// Log progress to finding optimal solution in a nice way. Preferred to raw solver output.
 
-				// Go! Go! Go!
-				if (solver.solve(false))					// The boolean argument is whether to print raw solver output
-				{
-					schedules.add(new Solution(model, solver.schedulingMap()));
-					exporter.export(model, solver, true);	// Success! Export solution
-				}
-				else
-				{
-					break;
-				}
+			// Go! Go! Go!
+			boolean solved = solver.solve(false);		// The boolean argument is whether to print raw solver output
+			timeBudget.weekFinished(model);
+			
+			if (!solved)
+			{
+				return null;
 			}
+			
+			Solution solution = new Solution(model, solver.schedulingMap());
+			evaluator.load(solution);
+			
+			if (!evaluator.isFeasible() || evaluator.total() > solver.objectiveValue() + 0.01)
+			{
+				System.out.println("Warning: The solution does not evaluate to the solver's result:");
+				System.out.println(evaluator);
+			}
+			
+			exporter.export(model, solution, true);	// Success! Export solution
+			return solution;
 		}
 	}
+	
+	// Sets up the timetabling model for a given week. The model has no sessions if there is nothing to schedule that week.
+	public static Model setupModel(Importer importer, int week)
+	{
+		Model model = new Model(week, 8);
+		
+		model.addDays("Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday");		// Add days
+		model.addSlots(10);																		// Add a number of time slots. They start from the hour specified to the constructor of Model and is 1 hour long each.
+		model.addRooms("Lab 3 og 4", "Lab 5 og 6", "IMADAs terminalrum", "Fysik øvelseslab");	// Add special rooms. Everything else will be scheduled without a room.
+		
+		importer.importProblem(model);															// Import courses, sessions and students from input file
+		
+		return model;
+	}
+	
+	// Adds all hard and soft constraints of our problem to a solver. The schedules of earlier weeks are used to keep timetables stable between weeks.
+	public static void setupConstraints(Solver solver, Model model, List<Solution> schedules, AvoidNoCourseSpreading.Formulation spreadingFormulation)
+	{
+		// Setup hard constraints
+		solver.addConstraint(new EnforceSessionsScheduled(solver, model));
+		solver.addConstraint(new EnforceSessionTimeWhitelist(solver, model));
+		solver.addConstraint(new EnforceSessionTimeBlacklist(solver, model));
+		
+		solver.addConstraint(new EnforceNoStaffConflicts(solver, model));
+		solver.addConstraint(new EnforceNoRoomConflicts(solver, model));
+		solver.addConstraint(new EnforceRoomBreaks(solver, model));
+
+		// Setup soft constraints
+		solver.addConstraint(new AvoidPersonConflicts(solver, model, PERSON_CONFLICT_PENALTY));
+		solver.addConstraint(new AvoidNoCourseSpreading(solver, model, COURSE_SPREADING_PENALTY, spreadingFormulation));
+		solver.addConstraint(new AvoidUnalignedAllocation(solver, model, UNALIGNED_ALLOCATION_PENALTY));
+		solver.addConstraint(new AvoidTimetableInstability(solver, model, schedules, STABILITY_BONUS));
+		solver.addConstraint(new AvoidNoLunchBreaks(solver, model, lunchBreakSlots(model), LUNCH_BREAK_PENALTY));
+		solver.addConstraint(new AvoidUndesiredTimes(solver, model, undesiredTimes(model)));
+	}
+	
+	public static SolutionEvaluator setupEvaluator(Model model, List<Solution> schedules)
+	{
+		return new SolutionEvaluator(model, PERSON_CONFLICT_PENALTY, COURSE_SPREADING_PENALTY, UNALIGNED_ALLOCATION_PENALTY, schedules, STABILITY_BONUS, lunchBreakSlots(model), LUNCH_BREAK_PENALTY, undesiredTimes(model));
+	}
+	
+	private static List<Slot> lunchBreakSlots(Model model)
+	{
+		return Arrays.asList(model.findSlot(11), model.findSlot(12), model.findSlot(13));
+	}
+	
+	// Specifying null as day or slot means any day or slot respectively. Last argument is the penalty.
+	private static List<Triplet<Day, Slot, Integer>> undesiredTimes(Model model)
+	{
+		return Arrays.asList
+		(
+			new Triplet<>((Day) null,					model.findSlot(8),	2),
+			new Triplet<>((Day) null,					model.findSlot(16),	1),
+			new Triplet<>((Day) null,					model.findSlot(17),	2),
+			new Triplet<>(model.findDay("Friday"),		model.findSlot(14),	1),
+			new Triplet<>(model.findDay("Friday"),		model.findSlot(15),	1),
+			new Triplet<>(model.findDay("Friday"),		model.findSlot(16),	2),
+			new Triplet<>(model.findDay("Friday"),		model.findSlot(17),	2),
+			new Triplet<>(model.findDay("Saturday"),	(Slot) null,		8)
+		);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package problems;
+
+import callbacks.gurobi.SemesterTimeBudget;
+import exporters.Exporter;
+import importers.ProblemSpec;
+import importers.SpecImporter;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import model.Course;
+import model.Day;
+import model.Model;
+import model.Person;
+import model.Session;
+import model.Slot;
+import model.Solution;
+import org.javatuples.Pair;
+import util.FileWatcher;
+import util.Tools;
+
+// The watch mode of NatProblem. All weeks are solved once, after which the input files are watched for changes. After every change the input is
+// imported again, but only the weeks affected by the change are solved and exported again. A week is affected if its own part of the input changed
+// (see ProblemSpec.weekSignature()) or if the solution of an earlier week changed for one of its courses, as these solutions are used to keep the
+// timetables stable between weeks (see AvoidTimetableInstability).
+class WatchedSemester
+{
+	private static final long SETTLE_MILLIS = 500;			// Editors often save a file in several steps, so wait this long for changes to settle
+	private static final String INPUT_EXTENSION = ".json";	// Input files in watched folders, like MultiFileImporter picks them
+
+	private final Exporter exporter;
+	private final File telemetryFolder;
+	private final TreeMap<Integer, SolvedWeek> weeks = new TreeMap<>();	// The current solution of every week, in order
+	private int changes = 0;
+
+	private WatchedSemester(Exporter exporter, File telemetryFolder)
+	{
+		this.exporter = exporter;
+		this.telemetryFolder = telemetryFolder;
+	}
+
+	// Solves all weeks and keeps updating them as the input changes. Never returns.
+	public static void watch(String inputs, String enrollmentsFile, SpecImporter importer, Exporter exporter, File telemetryFolder)
+	{
+		List<File> paths = new ArrayList<>();
+
+		for (String input : inputs.split(File.pathSeparator))
+		{
+			paths.add(new File(input));
+		}
+
+		if (enrollmentsFile != null)
+		{
+			paths.add(new File(enrollmentsFile));
+		}
+
+		WatchedSemester semester = new WatchedSemester(exporter, telemetryFolder);
+
+		// Start watching before the first run, so changes made during it are not missed
+		try (FileWatcher watcher = new FileWatcher(paths, INPUT_EXTENSION))
+		{
+			semester.update(importer.spec());
+
+			while (true)
+			{
+				System.out.println("Watching '" + inputs + "'" + (enrollmentsFile != null ? " and '" + enrollmentsFile + "'" : "") + " for changes");
+				Set<Path> changedFiles = watcher.awaitChanges(SETTLE_MILLIS);
+				System.out.println("Input changed: " + changedFiles);
+
+				ProblemSpec spec;
+
+				try
+				{
+					spec = NatProblem.setupImporter(inputs, enrollmentsFile).spec();
+				}
+				catch (RuntimeException ex)
+				{
+					// Most likely an edit in progress, like a syntax error or a file briefly missing while an editor replaces it. Keep watching, as
+					// the next change probably fixes it.
+					System.out.println("Could not import the changed input, keeping the current timetables: " + ex.getMessage());
+					continue;
+				}
+
+				semester.update(spec);
+			}
+		}
+	}
+
+	// Solves and exports the weeks of the given spec that are affected by the changes since the last update
+	private void update(ProblemSpec spec)
+	{
+		long startTime = System.currentTimeMillis();
+
+		// Find the first week whose input changed. Weeks without sessions are dropped.
+		Map<Integer, List<Object>> signatures = new TreeMap<>();
+		int firstChangedWeek = Integer.MAX_VALUE;
+
+		for (int week = 0; week <= 53; week++)
+		{
+			SolvedWeek solvedWeek = weeks.get(week);
+
+			if (spec.sessions(week).isEmpty())
+			{
+				if (solvedWeek != null)
+				{
+					System.out.println(solvedWeek.model.modelName + " no longer has anything to schedule. Its last exported timetables are left as they are.");
+					firstChangedWeek = Math.min(firstChangedWeek, week);
+				}
+
+				continue;
+			}
+
+			List<Object> signature = spec.weekSignature(week);
+			signatures.put(week, signature);
+
+			if (solvedWeek == null || !solvedWeek.signature.equals(signature))
+			{
+				firstChangedWeek = Math.min(firstChangedWeek, week);
+			}
+		}
+
+		if (firstChangedWeek == Integer.MAX_VALUE)
+		{
+			System.out.println("The changes do not affect any week");
+			return;
+		}
+
+		// All weeks from the first change on might have to be solved again. Set up their models before touching any solution, so an input error
+		// found while doing so leaves everything as it was.
+		List<Model> models = new LinkedList<>();
+
+		try
+		{
+			for (int week : signatures.keySet())
+			{
+				if (week >= firstChangedWeek)
+				{
+					Model model = NatProblem.setupModel(spec, week);
+
+					if (!model.sessions().isEmpty())
+					{
+						models.add(model);
+					}
+				}
+			}
+		}
+		catch (RuntimeException ex)
+		{
+			System.out.println("Could not set up the changed weeks, keeping the current timetables: " + ex.getMessage());
+			return;
+		}
+
+		weeks.keySet().retainAll(signatures.keySet());
+
+		// The solutions of the weeks before the first change stay as they are
+		List<SolvedWeek> earlierWeeks = new ArrayList<>(weeks.headMap(firstChangedWeek).values());
+		List<Solution> schedules = new LinkedList<>();
+
+		for (SolvedWeek earlierWeek : earlierWeeks)
+		{
+			schedules.add(earlierWeek.solution);
+		}
+
+		// Give every week the same share of the time budget as in a full run
+		SemesterTimeBudget timeBudget = new SemesterTimeBudget(NatProblem.SEMESTER_TIME_BUDGET * models.size() / Math.max(1, signatures.size()), models);
+		File folder = telemetryFolder();
+		int solvedCount = 0;
+
+		for (Model model : models)
+		{
+			SolvedWeek solvedWeek = weeks.get(model.week);
+			List<Object> signature = signatures.get(model.week);
+			List<Object> stabilityInputs = stabilityInputs(model, earlierWeeks);
+
+			if (solvedWeek != null && solvedWeek.signature.equals(signature) && solvedWeek.stabilityInputs.equals(stabilityInputs))
+			{
+				timeBudget.weekSkipped(model);
+			}
+			else
+			{
+				System.out.println("Solving " + model.modelName + (solvedWeek != null && solvedWeek.signature.equals(signature) ? " as earlier weeks it depends on changed" : ""));
+				Solution solution = NatProblem.solveWeek(model, schedules, timeBudget, folder, exporter);
+
+				if (solution == null)
+				{
+					// Like a full run, stop here as the later weeks depend on this one. They are all solved again after the next change.
+					System.out.println("No solution found for " + model.modelName + ". It and the weeks after it will be solved again after the next change.");
+					weeks.tailMap(model.week).clear();
+					break;
+				}
+
+				solvedWeek = new SolvedWeek(signature, stabilityInputs, model, solution);
+				weeks.put(model.week, solvedWeek);
+				solvedCount++;
+			}
+
+			earlierWeeks.add(solvedWeek);
+			schedules.add(solvedWeek.solution);
+		}
+
+		System.out.println("Solved " + solvedCount + " of " + signatures.size() + " weeks in " + Tools.timeString((System.currentTimeMillis() - startTime) / 1000));
+	}
+
+	// The first run writes its telemetry to the telemetry folder, every change after it to a subfolder of its own
+	private File telemetryFolder()
+	{
+		File folder = (changes == 0 ? telemetryFolder : new File(telemetryFolder, "change-" + changes));
+		changes++;
+
+		if (!folder.mkdirs())
+		{
+			throw new IllegalStateException("Could not create telemetry directory " + folder);
+		}
+
+		return folder;
+	}
+
+	// Everything from the solutions of earlier weeks that the stability bonuses of the given week depend on. These only look at earlier solutions of
+	// the same course (see AvoidTimetableInstability.bonus()).
+	private static List<Object> stabilityInputs(Model model, List<SolvedWeek> earlierWeeks)
+	{
+		List<Object> inputs = new ArrayList<>();
+
+		for (Course course : model.courses())
+		{
+			inputs.add(course.name);
+
+			for (SolvedWeek earlierWeek : earlierWeeks)
+			{
+				Set<List<Object>> courseSchedule = earlierWeek.courseSchedules.get(course.name);
+
+				if (courseSchedule != null)
+				{
+					inputs.add(courseSchedule);
+				}
+			}
+		}
+
+		return inputs;
+	}
+
+	private static final class SolvedWeek
+	{
+		public final List<Object> signature;
+		public final List<Object> stabilityInputs;
+		public final Model model;
+		public final Solution solution;
+		public final Map<String, Set<List<Object>>> courseSchedules = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);	// Who attends which type of session when, per course
+
+		public SolvedWeek(List<Object> signature, List<Object> stabilityInputs, Model model, Solution solution)
+		{
+			this.signature = signature;
+			this.stabilityInputs = stabilityInputs;
+			this.model = model;
+			this.solution = solution;
+
+			for (Session session : model.sessions())
+			{
+				Set<List<Object>> courseSchedule = courseSchedules.get(session.course.name);
+
+				if (courseSchedule == null)
+				{
+					courseSchedule = new HashSet<>();
+					courseSchedules.put(session.course.name, courseSchedule);
+				}
+
+				Pair<Day, Slot> start = solution.scheduledStart(session);
+
+				for (Person person : session.persons)
+				{
+					courseSchedule.add(Arrays.<Object>asList(person.name, session.type, start.getValue0().name, start.getValue1().startHour));
+				}
+			}
+		}
+	}
+}
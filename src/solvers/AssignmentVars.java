@@ -0,0 +1,86 @@
+package solvers;
+
+import gurobi.GRBVar;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import model.Day;
+import model.Model;
+import model.Session;
+import model.Slot;
+import util.Tools;
+
+// The assignment variables of a model: one binary variable for every day, session and slot the session may start in. Shared by the solvers,
+// which create the variables through their own addBinaryVar().
+class AssignmentVars
+{
+	private final Model model;
+	private final GRBVar[][][] vars;	// Indexed by day, session and start slot
+
+	public AssignmentVars(Model model, Solver solver)
+	{
+		this.model = model;
+		this.vars = new GRBVar[model.days().size()][model.sessions().size()][];
+
+		for (Session session : model.sessions())
+		{
+			int slotCount = model.slots().size() - session.length + 1;	// Only create assignment variables for time slots in which the session will actually fit (a session of 2 hours cannot fit in the last slot of the day, for example)
+
+			for (Day day : model.days())
+			{				
+				vars[model.indexOf(day)][model.indexOf(session)] = new GRBVar[slotCount];
+
+				for (Slot slot : model.slots().subList(0, slotCount))
+				{
+					vars[model.indexOf(day)][model.indexOf(session)][model.indexOf(slot)] = solver.addBinaryVar(Tools.nameConcat("ASSIGNMENT", day, slot, session.course, session));
+				}
+			}
+		}
+	}
+	
+	// Returns the assignment variable for a session corresponding to it being scheduled to start at a specific time
+	public GRBVar startVar(Day day, Slot slot, Session session)
+	{
+		if (!model.sessionFits(session, slot))
+		{
+			throw new IllegalArgumentException("Session " + session + " does not fit into slot " + slot);
+		}
+
+		return vars[model.indexOf(day)][model.indexOf(session)][model.indexOf(slot)];
+	}
+	
+	// Returns all start variables of a session on a day, indexed by start slot
+	public GRBVar[] startVars(int dayIndex, int sessionIndex)
+	{
+		return vars[dayIndex][sessionIndex];
+	}
+	
+	// Returns all assignment variables whose scheduling covers a specific time. Null means any day, slot or session.
+	public GRBVar[] assignVars(Day day, Slot slot, Session session)
+	{
+		List<GRBVar> coveringVars = new LinkedList<>();
+		
+		for (Day currentDay : (day == null ? model.days() : Arrays.asList(day)))
+		{
+			for (Session currentSession : (session == null ? model.sessions() : Arrays.asList(session)))
+			{
+				// Find the relevant slots
+				int slotStartIndex = 0;
+				int slotEndIndex = model.slots().size() - currentSession.length;
+
+				if (slot != null)
+				{
+					slotStartIndex = Math.max(slotStartIndex, model.indexOf(slot) - currentSession.length + 1);
+					slotEndIndex = Math.min(slotEndIndex, model.indexOf(slot));
+				}
+
+				for (Slot currentSlot : model.slots().subList(slotStartIndex, slotEndIndex + 1))
+				{
+					coveringVars.add(vars[model.indexOf(currentDay)][model.indexOf(currentSession)][model.indexOf(currentSlot)]);
+				}
+			}
+		}
+		
+		return coveringVars.toArray(new GRBVar[coveringVars.size()]);
+	}
+}
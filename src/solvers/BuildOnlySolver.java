@@ -0,0 +1,239 @@
+package solvers;
+
+import constraints.Constraint;
+import gurobi.GRBConstr;
+import gurobi.GRBLinExpr;
+import gurobi.GRBVar;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedList;
+import java.util.List;
+import model.Day;
+import model.Model;
+import model.Session;
+import model.Slot;
+
+// A solver backend which only builds the model, without passing anything to Gurobi. It needs neither the Gurobi native library nor a licence,
+// so the model building code (assignment variables and constraints) can be measured anywhere. Rows and terms are counted but not kept.
+// Variables are plain GRBVar objects not attached to any Gurobi model. Solving is not supported.
+public class BuildOnlySolver implements Solver
+{
+	private static final Constructor<GRBVar> VAR_CONSTRUCTOR;
+	
+	static
+	{
+		try
+		{
+			VAR_CONSTRUCTOR = GRBVar.class.getDeclaredConstructor();		// Not public, as variables are normally created by GRBModel
+			VAR_CONSTRUCTOR.setAccessible(true);
+		}
+		catch (NoSuchMethodException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	private final Model model;
+	private final List<Constraint> constraints = new LinkedList<>();
+	private final BuildProfiler profiler = new BuildProfiler();
+	private AssignmentVars assignVars = null;
+	private int varCount = 0;
+	private int rowCount = 0;
+	private int termCount = 0;
+	private int objectiveTermCount = 0;
+
+	public BuildOnlySolver(Model model)
+	{
+		this.model = model;
+	}
+	
+	@Override
+	public void addConstraint(Constraint constraint)
+	{
+		constraints.add(constraint);
+	}
+	
+	// Creates the assignment variables. Must be called before any constraint is built. build() does this as well.
+	public void createAssignmentVars()
+	{
+		assignVars = new AssignmentVars(model, this);
+	}
+	
+	// Builds the model like GurobiSolver.solve() does, timing each phase of each constraint
+	public void build()
+	{
+		model.assertValid();
+		createAssignmentVars();
+		
+		for (Constraint constraint : constraints)
+		{
+			profiler.start();
+			constraint.addVariables();
+			profiler.stop(constraint.toString(), BuildProfiler.VARIABLES);
+		}
+		
+		for (Constraint constraint : constraints)
+		{
+			profiler.start();
+			constraint.addConstraints();
+			profiler.stop(constraint.toString(), BuildProfiler.CONSTRAINTS);
+		}
+		
+		for (Constraint constraint : constraints)
+		{
+			profiler.start();
+			constraint.addObjectives();
+			profiler.stop(constraint.toString(), BuildProfiler.OBJECTIVES);
+		}
+	}
+	
+	// Returns the total number of nanoseconds build() spent on the given constraint
+	public long buildNanos(Constraint constraint)
+	{
+		long nanos = 0;
+		
+		for (int phase = 0; phase < BuildProfiler.PHASE_COUNT; phase++)
+		{
+			nanos += profiler.nanos(constraint.toString(), phase);
+		}
+		
+		return nanos;
+	}
+	
+	public List<Constraint> constraints()
+	{
+		return constraints;
+	}
+	
+	public int varCount()
+	{
+		return varCount;
+	}
+	
+	public int rowCount()
+	{
+		return rowCount;
+	}
+	
+	public int termCount()
+	{
+		return termCount;
+	}
+	
+	public int objectiveTermCount()
+	{
+		return objectiveTermCount;
+	}
+	
+	@Override
+	public boolean solve(boolean logSolverOutput)
+	{
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " only builds models. Use build() instead.");
+	}
+	
+	@Override
+	public boolean isScheduledDuring(Day day, Slot slot, Session session)
+	{
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " has no solutions");
+	}
+	
+	@Override
+	public int varValue(GRBVar var)
+	{
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " has no solutions");
+	}
+	
+	@Override
+	public GRBVar startVar(Day day, Slot slot, Session session)
+	{
+		return assignVars.startVar(day, slot, session);
+	}
+	
+	@Override
+	public GRBVar[] assignVars(Day day, Slot slot, Session session)
+	{
+		return assignVars.assignVars(day, slot, session);
+	}
+	
+	@Override
+	public GRBVar[] dayVars(Day day, Session session)
+	{
+		return assignVars(day, null, session);
+	}
+	
+	@Override
+	public GRBVar addLinearVar(double minValue, Double maxValue, String name)
+	{
+		return addVar();
+	}
+	
+	@Override
+	public GRBVar addIntegerVar(double minValue, Double maxValue, String name)
+	{
+		return addVar();
+	}
+	
+	@Override
+	public GRBVar addBinaryVar(String name)
+	{
+		return addVar();
+	}
+	
+	private GRBVar addVar()
+	{
+		try
+		{
+			varCount++;
+			return VAR_CONSTRUCTOR.newInstance();
+		}
+		catch (InstantiationException | IllegalAccessException | InvocationTargetException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	// Rows are only counted, so there is no GRBConstr to return
+	@Override
+	public GRBConstr addEqualsConstr(GRBLinExpr lhs, double rhs, String name)
+	{
+		return addConstr(lhs, null);
+	}
+	
+	@Override
+	public GRBConstr addLessOrEqualsConstr(GRBLinExpr lhs, double rhs, String name)
+	{
+		return addConstr(lhs, null);
+	}
+	
+	@Override
+	public GRBConstr addEqualsConstr(GRBLinExpr lhs, GRBLinExpr rhs, String name)
+	{
+		return addConstr(lhs, rhs);
+	}
+	
+	@Override
+	public GRBConstr addLessOrEqualsConstr(GRBLinExpr lhs, GRBLinExpr rhs, String name)
+	{
+		return addConstr(lhs, rhs);
+	}
+	
+	private GRBConstr addConstr(GRBLinExpr lhs, GRBLinExpr rhs)
+	{
+		rowCount++;
+		termCount += lhs.size() + (rhs == null ? 0 : rhs.size());
+		
+		return null;
+	}
+	
+	@Override
+	public boolean objectiveNamesUsed()
+	{
+		return false;	// Like GurobiSolver without objective attribution
+	}
+	
+	@Override
+	public void addObjective(double weight, GRBVar var, String name)
+	{
+		objectiveTermCount++;
+	}
+}
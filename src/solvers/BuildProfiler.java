@@ -0,0 +1,80 @@
+package solvers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import util.GeputHashMap;
+
+// Measures wall time and bytes allocated by the current thread for each build phase of each constraint. Allocations are read from the
+// thread allocation counter of the JVM, which is not available on all JVMs. allocationSupported() tells whether it is.
+class BuildProfiler
+{
+	public static final int VARIABLES = 0;
+	public static final int CONSTRAINTS = 1;
+	public static final int OBJECTIVES = 2;
+	public static final int PHASE_COUNT = 3;
+	
+	private final GeputHashMap<String, long[]> nanos = new GeputHashMap<>();
+	private final GeputHashMap<String, long[]> bytes = new GeputHashMap<>();
+	private final com.sun.management.ThreadMXBean allocationBean;
+	
+	private long startNanos;
+	private long startBytes;
+	
+	public BuildProfiler()
+	{
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		if (threadBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported())
+		{
+			allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			allocationBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		else
+		{
+			allocationBean = null;
+		}
+	}
+	
+	public void start()
+	{
+		startBytes = allocatedBytes();
+		startNanos = System.nanoTime();
+	}
+	
+	public void stop(String owner, int phase)
+	{
+		long endNanos = System.nanoTime();
+		long endBytes = allocatedBytes();
+		
+		nanos.geput(owner, new long[PHASE_COUNT])[phase] += endNanos - startNanos;
+		bytes.geput(owner, new long[PHASE_COUNT])[phase] += endBytes - startBytes;
+	}
+	
+	public boolean allocationSupported()
+	{
+		return (allocationBean != null);
+	}
+	
+	public long nanos(String owner, int phase)
+	{
+		long[] ownerNanos = nanos.get(owner);
+		return (ownerNanos == null ? 0 : ownerNanos[phase]);
+	}
+	
+	// Returns -1 if allocations cannot be measured
+	public long bytes(String owner, int phase)
+	{
+		if (!allocationSupported())
+		{
+			return -1;
+		}
+		
+		long[] ownerBytes = bytes.get(owner);
+		return (ownerBytes == null ? 0 : ownerBytes[phase]);
+	}
+	
+	private long allocatedBytes()
+	{
+		return (allocationBean == null ? 0 : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()));
+	}
+}
@@ -2,6 +2,8 @@ package solvers;
 
 import callbacks.gurobi.GurobiCallback;
 import callbacks.gurobi.GurobiCallbackCoordinator;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import constraints.Constraint;
 import gurobi.GRB;
 import gurobi.GRBConstr;
@@ -12,7 +14,6 @@ import gurobi.GRBModel;
 import gurobi.GRBVar;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -25,33 +26,57 @@ import model.Model;
 import model.Session;
 import model.Slot;
 import org.javatuples.Pair;
-import org.javatuples.Triplet;
 import util.AsciiTable;
 import util.GeputHashMap;
+import util.JsonLinesSink;
 import util.Tools;
 
 public class GurobiSolver implements Solver, AutoCloseable
 {
 	private static final double DOUBLE_ZERO_THRESHOLD = 0.01;	// Consider values closer than this to zero as zero for various purposes
 	private static final DecimalFormat OBJECTIVE_VALUE_FORMAT = new DecimalFormat("0.00", new DecimalFormatSymbols(Locale.ENGLISH));
+	private static final DecimalFormat MEGABYTE_FORMAT = new DecimalFormat("0.0", new DecimalFormatSymbols(Locale.ENGLISH));
+	private static final String[] BUILD_PHASE_NAMES = {"variables", "constraints", "objectives"};		// In the order of the BuildProfiler phases
+	private static final double OBJECTIVE_GRANULARITY_TOLERANCE = 1e-6;
+	private static final String DAY_INDICATORS_NAME = "<Session day indicators>";
 	
 	private final Model model;
 		
 	private final List<Constraint> constraints = new LinkedList<>();
-	private final List<Triplet<Double, GRBVar, String>> objectives = new LinkedList<>();
 	
 	private final GurobiCallbackCoordinator callbackCoordinator = new GurobiCallbackCoordinator(this);
 	
 	private final GRBModel mipModel;
-	private GRBVar[][][] assignVars = null;
+	private final VarRegistry vars = new VarRegistry();
+	private final RowSink rowSink;
+	private final boolean createDayIndicators;
+	private AssignmentVars assignVars = null;
+	private GRBVar[][] dayIndicators = null;
+	private ObjectiveTerms objectiveTerms = null;
+	private ValueSnapshot solution = null;		// All variable values of the final solution, fetched at once after solving
+	private GRBVar[] allVars = null;
+	private boolean objectiveAttribution = false;
+	private JsonLinesSink telemetry = null;
+	private boolean buildProfileDump = false;
+	private Integer seed = null;
+	private double buildSeconds = 0;
 	private boolean solved = false;
 
 	public GurobiSolver(Model model)
+	{
+		this(model, false);
+	}
+	
+	// Day indicators are variables indicating whether a session is scheduled on a given day. Constraints working with whole days can
+	// use these through dayVars() instead of the sum of all assignment variables of that day, resulting in fewer terms and often a tighter model.
+	public GurobiSolver(Model model, boolean createDayIndicators)
 	{
 		try
 		{
 			this.model = model;
+			this.createDayIndicators = createDayIndicators;
 			mipModel = new GRBModel(new GRBEnv());
+			rowSink = new RowSink(mipModel, vars);
 		}
 		catch (GRBException ex)
 		{
@@ -59,6 +84,37 @@ public class GurobiSolver implements Solver, AutoCloseable
 		}
 	}
 	
+	// Objective attribution keeps every objective term with its name, so the individual penalties of a solution can be listed after solving.
+	// Without it (the default), constraints do not build names for the terms. Penalties and bonuses per constraint are reported either way.
+	public void setObjectiveAttribution(boolean objectiveAttribution)
+	{
+		if (objectiveTerms != null)
+		{
+			throw new IllegalStateException("Objective attribution must be set before solving");
+		}
+		
+		this.objectiveAttribution = objectiveAttribution;
+	}
+	
+	// Emits the duration of each model build phase, the size of the model and the solve result as telemetry events
+	public void setTelemetry(JsonLinesSink telemetry)
+	{
+		this.telemetry = telemetry;
+	}
+	
+	// Prints the build profile of each constraint (time and bytes allocated per build phase, row and term counts) as a JSON line prefixed
+	// with "Build profile: ", so slow or bloated constraints are easy to pick out of logs. The profile is also emitted as telemetry, if enabled.
+	public void setBuildProfileDump(boolean buildProfileDump)
+	{
+		this.buildProfileDump = buildProfileDump;
+	}
+	
+	// Fixes the random seed of Gurobi, making solves of the same model on the same machine repeatable. Without a seed, every solve gets a random one.
+	public void setSeed(int seed)
+	{
+		this.seed = seed;
+	}
+	
 	public void addCallback(GurobiCallback callback)
 	{
 		callbackCoordinator.callbacks.add(callback);
@@ -81,127 +137,221 @@ public class GurobiSolver implements Solver, AutoCloseable
 			}
 			
 			// Ensure timetabling model is valid
+			long phaseStart = System.nanoTime();
+			long buildStart = phaseStart;
 			model.assertValid();
+			phaseStart = phaseFinished("validation", phaseStart);
 
 			// Setup assignment variables
-			assignVars = new GRBVar[model.days().size()][model.sessions().size()][];
+			assignVars = new AssignmentVars(model, this);
 
-			for (Session session : model.sessions())
+			mipModel.update();
+			int sessionAssignmentVarCount = vars.size();
+			phaseStart = phaseFinished("assignment variables", phaseStart);
+			
+			// Setup day indicator variables, if requested, and link them to the assignment variables
+			if (createDayIndicators)
 			{
-				int slotCount = model.slots().size() - session.length + 1;	// Only create assignment variables for time slots in which the session will actually fit (a session of 2 hours cannot fit in the last slot of the day, for example)
-
-				for (Day day : model.days())
-				{				
-					assignVars[model.indexOf(day)][model.indexOf(session)] = new GRBVar[slotCount];
-
-					for (Slot slot : model.slots().subList(0, slotCount))
+				rowSink.setOwner(DAY_INDICATORS_NAME);
+				dayIndicators = new GRBVar[model.days().size()][model.sessions().size()];
+				
+				for (Session session : model.sessions())
+				{
+					for (Day day : model.days())
 					{
-						assignVars[model.indexOf(day)][model.indexOf(session)][model.indexOf(slot)] = addBinaryVar(Tools.nameConcat("ASSIGNMENT", day, slot, session.course, session));
+						dayIndicators[model.indexOf(day)][model.indexOf(session)] = addBinaryVar(Tools.nameConcat("DAY", day, session.course, session));
 					}
 				}
+				
+				mipModel.update();
+				
+				for (Session session : model.sessions())
+				{
+					for (Day day : model.days())
+					{
+						GRBLinExpr lhs = new GRBLinExpr();
+						
+						for (GRBVar var : assignVars(day, null, session))
+						{
+							lhs.addTerm(1, var);
+						}
+						
+						GRBLinExpr rhs = new GRBLinExpr();
+						rhs.addTerm(1, dayIndicators[model.indexOf(day)][model.indexOf(session)]);
+						
+						addEqualsConstr(lhs, rhs, Tools.nameConcat("DAY", day, session.course, session));
+					}
+				}
+				
+				mipModel.update();
 			}
+			
+			int dayIndicatorVarCount = vars.size() - sessionAssignmentVarCount;
+			phaseStart = phaseFinished("day indicators", phaseStart);
 
-			mipModel.update();
-			int sessionAssignmentVarCount = mipModel.getVars().length;
-
-			// Setup constraint variables
+			// Setup constraint variables. Variables are counted from the registry, as mipModel.getVars() would copy all variables (and skew the allocation profile).
 			GeputHashMap<String, Integer> constraintVariableCounts = new GeputHashMap<>();
+			BuildProfiler profiler = new BuildProfiler();
 
 			for (Constraint constraint : constraints)
 			{
-				int prevCount = mipModel.getVars().length;
+				int prevCount = vars.size();
 
+				profiler.start();
 				constraint.addVariables();
 				mipModel.update();
+				profiler.stop(constraint.toString(), BuildProfiler.VARIABLES);
 
 				int constraintVariableCount = constraintVariableCounts.geput(constraint.toString(), 0);
-				constraintVariableCounts.put(constraint.toString(), (constraintVariableCount + (mipModel.getVars().length - prevCount)));
+				constraintVariableCounts.put(constraint.toString(), (constraintVariableCount + (vars.size() - prevCount)));
 			}		
+			
+			phaseStart = phaseFinished("constraint variables", phaseStart);
 
-			// Setup constraint constraints
-			GeputHashMap<String, Integer> constraintCounts = new GeputHashMap<>();
-			GeputHashMap<String, Integer> constraintTermCounts = new GeputHashMap<>();
-			int constraintTermsTotal = 0;
-
+			// Setup constraint constraints. Rows are counted per constraint by the row sink, which also leaves out redundant rows.
 			for (Constraint constraint : constraints)
 			{
-				int prevConstraintCount = (mipModel.getConstrs() == null ? 0 : mipModel.getConstrs().length);
-				int prevConstraintTermCount = mipModel.get(GRB.IntAttr.NumNZs);
-
+				rowSink.setOwner(constraint.toString());
+				profiler.start();
 				constraint.addConstraints();
 				mipModel.update();
-
-				int currentConstraintCount = (mipModel.getConstrs() == null ? 0 : mipModel.getConstrs().length);
-
-				int constraintCount = constraintCounts.geput(constraint.toString(), 0);
-				constraintCounts.put(constraint.toString(), constraintCount + (currentConstraintCount - prevConstraintCount));
-
-				int constraintTermCount = constraintTermCounts.geput(constraint.toString(), 0);
-				int constraintTermsAdded = (mipModel.get(GRB.IntAttr.NumNZs) - prevConstraintTermCount);
-				constraintTermsTotal += constraintTermsAdded;
-				constraintTermCounts.put(constraint.toString(), constraintTermCount + constraintTermsAdded);
+				profiler.stop(constraint.toString(), BuildProfiler.CONSTRAINTS);
 			}
+			
+			rowSink.finish();
+			mipModel.update();
+			phaseStart = phaseFinished("constraint rows", phaseStart);
 
-			// Setup constraint objectives
-			GeputHashMap<String, Integer> constraintObjectiveTermCounts = new GeputHashMap<>();
-			GRBLinExpr completeObjective = new GRBLinExpr();
+			// Setup constraint objectives. Terms are accumulated into one coefficient per variable and set in bulk.
+			objectiveTerms = new ObjectiveTerms(vars, objectiveAttribution);
 			
 			for (Constraint constraint : constraints)
 			{
-				int prevCount = objectives.size();
-
+				objectiveTerms.setOwner(constraint.toString());
+				profiler.start();
 				constraint.addObjectives();
-
-				int constraintObjectiveTermCount = constraintObjectiveTermCounts.geput(constraint.toString(), 0);
-				constraintObjectiveTermCounts.put(constraint.toString(), constraintObjectiveTermCount + (objectives.size() - prevCount));
-			}
-			
-			for (Triplet<Double, GRBVar, String> objective : objectives)
-			{
-				completeObjective.addTerm(objective.getValue0(), objective.getValue1());
+				profiler.stop(constraint.toString(), BuildProfiler.OBJECTIVES);
 			}
 			
 			mipModel.update();
-			mipModel.setObjective(completeObjective, GRB.MINIMIZE);
+			allVars = vars.vars();
+			mipModel.set(GRB.DoubleAttr.Obj, allVars, objectiveTerms.coefficients());
+			mipModel.set(GRB.IntAttr.ModelSense, GRB.MINIMIZE);
+			phaseStart = phaseFinished("objectives", phaseStart);
+			buildSeconds = (phaseStart - buildStart) / 1e9;
 
 			// Time to output a stats table of variables, constraints, constraint terms and objective terms
-			AsciiTable statsTable = new AsciiTable(true, false, false, false, false);
+			// Build times and allocations are given per phase as "variables / constraints / objectives"
+			AsciiTable statsTable = new AsciiTable(true, false, false, false, false, false, false, false);
 			
 			// Add header row
-			statsTable.addRow((model.modelName + " (" + model.sessions().size() + " sessions)"), "Variables", "Constraints", "Constraint terms", "Objective terms");
+			statsTable.addRow((model.modelName + " (" + model.sessions().size() + " sessions)"), "Variables", "Constraints", "Constraint terms", "Objective terms", "Rows removed", "Build ms (V/C/O)", "Allocated MB (V/C/O)");
 			statsTable.addDelimiter();
 			
 			// Add row for session assignment variables
-			statsTable.addRow("<Session assignment>", sessionAssignmentVarCount, "0", "0", "0");
+			statsTable.addRow("<Session assignment>", sessionAssignmentVarCount, "0", "0", "0", "0", "", "");
+			
+			if (createDayIndicators)
+			{
+				statsTable.addRow(DAY_INDICATORS_NAME, dayIndicatorVarCount, rowSink.rowCount(DAY_INDICATORS_NAME), rowSink.termCount(DAY_INDICATORS_NAME), "0", rowSink.removedCount(DAY_INDICATORS_NAME), "", "");
+			}
 
 			// Add constraint rows
 			for (String constraintName : new TreeSet<>(constraintVariableCounts.keySet()))		// Using the key set from any of our maps will work. Wrap in TreeSet for sorting.
 			{
-				statsTable.addRow(constraintName, constraintVariableCounts.get(constraintName), constraintCounts.get(constraintName), constraintTermCounts.get(constraintName), constraintObjectiveTermCounts.get(constraintName));
+				statsTable.addRow(constraintName, constraintVariableCounts.get(constraintName), rowSink.rowCount(constraintName), rowSink.termCount(constraintName), objectiveTerms.termCount(constraintName), rowSink.removedCount(constraintName), buildTimes(profiler, constraintName), buildAllocations(profiler, constraintName));
+				
+				if (buildProfileDump || telemetry != null)
+				{
+					ObjectNode profile = (telemetry != null ? telemetry.event("constraint") : JsonNodeFactory.instance.objectNode());
+					profile.put("model", model.modelName);
+					profile.put("constraint", constraintName);
+					profile.put("variables", constraintVariableCounts.get(constraintName));
+					profile.put("rows", rowSink.rowCount(constraintName));
+					profile.put("nonzeros", rowSink.termCount(constraintName));
+					profile.put("objectiveTerms", objectiveTerms.termCount(constraintName));
+					profile.put("rowsRemoved", rowSink.removedCount(constraintName));
+					
+					for (int phase = 0; phase < BuildProfiler.PHASE_COUNT; phase++)
+					{
+						profile.put(BUILD_PHASE_NAMES[phase] + "Nanos", profiler.nanos(constraintName, phase));
+						profile.put(BUILD_PHASE_NAMES[phase] + "Bytes", profiler.bytes(constraintName, phase));
+					}
+					
+					if (buildProfileDump)
+					{
+						System.out.println("Build profile: " + profile);
+					}
+					
+					if (telemetry != null)
+					{
+						telemetry.emit(profile);
+					}
+				}
 			}
 
 			// Add totals row
 			statsTable.addDelimiter();
-			statsTable.addRow("Total", mipModel.getVars().length, mipModel.getConstrs().length, constraintTermsTotal, objectives.size());
+			statsTable.addRow("Total", vars.size(), (mipModel.getConstrs() == null ? 0 : mipModel.getConstrs().length), mipModel.get(GRB.IntAttr.NumNZs), objectiveTerms.termCount(), rowSink.removedTotal(), "", "");
 
 			// Print stats table
 			System.out.println(statsTable);
+			
+			if (telemetry != null)
+			{
+				ObjectNode event = telemetry.event("model");
+				event.put("model", model.modelName);
+				event.put("sessions", model.sessions().size());
+				event.put("variables", vars.size());
+				event.put("constraints", (mipModel.getConstrs() == null ? 0 : mipModel.getConstrs().length));
+				event.put("nonzeros", mipModel.get(GRB.IntAttr.NumNZs));
+				event.put("objectiveTerms", objectiveTerms.termCount());
+				event.put("rowsRemoved", rowSink.removedTotal());
+				telemetry.emit(event);
+			}
+			
+			phaseStart = System.nanoTime();
 
 			// Enough of the fancy stats stuff. Let's finalize our model by setting up various advanced settings
 			mipModel.setCallback(callbackCoordinator);
 			mipModel.getEnv().set(GRB.IntParam.Presolve, 2);													// 2 = Extra presolve (seems to give a significant boost to solve times)
-			mipModel.getEnv().set(GRB.IntParam.Seed, new Random().nextInt(Integer.MAX_VALUE));					// Randomize the seed for each run to avoid repeating uncommonly fast/slow solves
+			mipModel.getEnv().set(GRB.IntParam.Seed, (seed != null ? seed : new Random().nextInt(Integer.MAX_VALUE)));	// Randomize the seed for each run (unless fixed) to avoid repeating uncommonly fast/slow solves
 			mipModel.getEnv().set(GRB.IntParam.Threads, Runtime.getRuntime().availableProcessors() - 1);		// All but one core
 			mipModel.getEnv().set(GRB.IntParam.LogToConsole, (logSolverOutput ? 1 : 0));
 
 			// Now do the magic
 			System.out.println("--- Solving started ---");
 			mipModel.optimize();
+			callbackCoordinator.solveFinished();
 			System.out.println("--- Solving finished ---");
 			solved = true;
+			phaseStart = phaseFinished("optimization", phaseStart);
+			
+			if (mipModel.get(GRB.IntAttr.SolCount) > 0)
+			{
+				solution = new ValueSnapshot(vars, mipModel.get(GRB.DoubleAttr.X, allVars));
+			}
+			
+			phaseFinished("solution extraction", phaseStart);
 
 			// Handle result
 			int status = mipModel.get(GRB.IntAttr.Status);
+			
+			if (telemetry != null)
+			{
+				ObjectNode event = telemetry.event("result");
+				event.put("status", status);
+				event.put("runtime", mipModel.get(GRB.DoubleAttr.Runtime));
+				event.put("nodes", mipModel.get(GRB.DoubleAttr.NodeCount));
+				
+				if (solution != null)
+				{
+					event.put("objective", mipModel.get(GRB.DoubleAttr.ObjVal));
+					event.put("bound", mipModel.get(GRB.DoubleAttr.ObjBound));
+				}
+				
+				telemetry.emit(event);
+			}
 
 			if (status == GRB.Status.INFEASIBLE)
 			{
@@ -222,23 +372,37 @@ public class GurobiSolver implements Solver, AutoCloseable
 			}
 			else if (status == GRB.Status.OPTIMAL || status == GRB.Status.INTERRUPTED)
 			{
+				if (objectiveTerms.hasAttribution())
+				{
+					// List the individual penalties
+					for (int term = 0; term < objectiveTerms.termCount(); term++)
+					{
+						double objectiveResult = objectiveTerms.termWeight(term) * Math.round(solution.value(objectiveTerms.termVarId(term)));
+						
+						if (objectiveResult >= DOUBLE_ZERO_THRESHOLD)
+						{
+							System.out.println("Penalty: " + objectiveTerms.termName(term) + ". Cost: " + OBJECTIVE_VALUE_FORMAT.format(objectiveResult));
+						}
+					}
+				}
+				
+				// Break the objective down into per-constraint contributions
 				double penaltyTotal = 0;
 				double bonusTotal = 0;
+				AsciiTable contributionsTable = new AsciiTable(true, false, false);
+				contributionsTable.addRow("Constraint", "Penalties", "Bonus");
+				contributionsTable.addDelimiter();
 				
-				for (Triplet<Double, GRBVar, String> objective : objectives)
+				for (String constraintName : new TreeSet<>(objectiveTerms.owners()))
 				{
-					double objectiveResult = objective.getValue0() * varValue(objective.getValue1());
-					
-					if (objectiveResult >= DOUBLE_ZERO_THRESHOLD)
-					{
-						penaltyTotal += objectiveResult;
-						System.out.println("Penalty: " + objective.getValue2() + ". Cost: " + OBJECTIVE_VALUE_FORMAT.format(objectiveResult));
-					}
-					else if (objectiveResult <= -DOUBLE_ZERO_THRESHOLD)
-					{
-						bonusTotal += -objectiveResult;
-					}
+					double penalties = solutionValue(objectiveTerms.penalties(constraintName));
+					double bonuses = solutionValue(objectiveTerms.bonuses(constraintName));
+					penaltyTotal += penalties;
+					bonusTotal += bonuses;
+					contributionsTable.addRow(constraintName, OBJECTIVE_VALUE_FORMAT.format(-penalties), OBJECTIVE_VALUE_FORMAT.format(bonuses));
 				}
+				
+				System.out.println(contributionsTable);
 
 				// Print results table
 				AsciiTable resultsTable = new AsciiTable(true, false, false, false, false, false);
@@ -268,6 +432,51 @@ public class GurobiSolver implements Solver, AutoCloseable
 		}
 	}
 	
+	private static String buildTimes(BuildProfiler profiler, String owner)
+	{
+		StringBuilder times = new StringBuilder();
+		
+		for (int phase = 0; phase < BuildProfiler.PHASE_COUNT; phase++)
+		{
+			times.append(phase > 0 ? " / " : "").append(Math.round(profiler.nanos(owner, phase) / 1e6));
+		}
+		
+		return times.toString();
+	}
+	
+	private static String buildAllocations(BuildProfiler profiler, String owner)
+	{
+		if (!profiler.allocationSupported())
+		{
+			return "n/a";
+		}
+		
+		StringBuilder allocations = new StringBuilder();
+		
+		for (int phase = 0; phase < BuildProfiler.PHASE_COUNT; phase++)
+		{
+			allocations.append(phase > 0 ? " / " : "").append(MEGABYTE_FORMAT.format(profiler.bytes(owner, phase) / (1024.0 * 1024.0)));
+		}
+		
+		return allocations.toString();
+	}
+	
+	// Emits a telemetry event for a finished model build phase, if telemetry is enabled, and returns the start time of the next phase
+	private long phaseFinished(String phase, long phaseStart)
+	{
+		long phaseEnd = System.nanoTime();
+		
+		if (telemetry != null)
+		{
+			ObjectNode event = telemetry.event("phase");
+			event.put("phase", phase);
+			event.put("seconds", (phaseEnd - phaseStart) / 1e9);
+			telemetry.emit(event);
+		}
+		
+		return phaseEnd;
+	}
+	
 	@Override
 	public GRBVar addBinaryVar(String name)
 	{
@@ -290,7 +499,9 @@ public class GurobiSolver implements Solver, AutoCloseable
 	{
 		try
 		{
-			return mipModel.addVar(minValue, maxValue, 0, type, name);
+			GRBVar var = mipModel.addVar(minValue, maxValue, 0, type, name);
+			vars.add(var, minValue, maxValue, type);
+			return var;
 		}
 		catch (GRBException ex)
 		{
@@ -302,42 +513,26 @@ public class GurobiSolver implements Solver, AutoCloseable
 	@Override
 	public GRBVar startVar(Day day, Slot slot, Session session)
 	{
-		if (!model.sessionFits(session, slot))
-		{
-			throw new IllegalArgumentException("Session " + session + " does not fit into slot " + slot);
-		}
-
-		return assignVars[model.indexOf(day)][model.indexOf(session)][model.indexOf(slot)];
+		return assignVars.startVar(day, slot, session);
 	}
 	
 	// Method for retuning all assignment variables whose scheduling covers a specific time
 	@Override
 	public GRBVar[] assignVars(Day day, Slot slot, Session session)
 	{
-		List<GRBVar> vars = new LinkedList<>();
-		
-		for (Day currentDay : (day == null ? model.days() : Arrays.asList(day)))
+		return assignVars.assignVars(day, slot, session);
+	}
+	
+	// Method for returning variables whose sum indicates whether a session is scheduled on a specific day. This is either its day indicator or all its assignment variables of that day.
+	@Override
+	public GRBVar[] dayVars(Day day, Session session)
+	{
+		if (dayIndicators != null)
 		{
-			for (Session currentSession : (session == null ? model.sessions() : Arrays.asList(session)))
-			{
-				// Find the relevant slots
-				int slotStartIndex = 0;
-				int slotEndIndex = model.slots().size() - currentSession.length;
-
-				if (slot != null)
-				{
-					slotStartIndex = Math.max(slotStartIndex, model.indexOf(slot) - currentSession.length + 1);
-					slotEndIndex = Math.min(slotEndIndex, model.indexOf(slot));
-				}
-
-				for (Slot currentSlot : model.slots().subList(slotStartIndex, slotEndIndex + 1))
-				{
-					vars.add(assignVars[model.indexOf(currentDay)][model.indexOf(currentSession)][model.indexOf(currentSlot)]);
-				}
-			}
+			return new GRBVar[] {dayIndicators[model.indexOf(day)][model.indexOf(session)]};
 		}
 		
-		return vars.toArray(new GRBVar[vars.size()]);
+		return assignVars(day, null, session);
 	}
 	
 	public boolean isScheduledAt(Day day, Slot slot, Session session)
@@ -348,9 +543,13 @@ public class GurobiSolver implements Solver, AutoCloseable
 	@Override
 	public boolean isScheduledDuring(Day day, Slot slot, Session session)
 	{
-		for (GRBVar var : assignVars(day, slot, session))
+		// Check the start variables covering the slot directly instead of collecting them through assignVars()
+		GRBVar[] startVars = assignVars.startVars(model.indexOf(day), model.indexOf(session));
+		int slotIndex = model.indexOf(slot);
+		
+		for (int startIndex = Math.max(0, slotIndex - session.length + 1); startIndex <= Math.min(slotIndex, startVars.length - 1); startIndex++)
 		{
-			if (varValue(var) == 1)
+			if (varValue(startVars[startIndex]) == 1)
 			{
 				return true;
 			}
@@ -363,21 +562,64 @@ public class GurobiSolver implements Solver, AutoCloseable
 	public int varValue(GRBVar var)
 	{
 		// The rounding used in this function is very important, as the solver might return non-integral values very close to the integers they represent
+		var = rowSink.canonicalVar(var);
+		
 		if (!solved)
 		{
-			return (int) Math.round(callbackCoordinator.getSolution(var));
+			// While solving, values are taken from the newest incumbent
+			if (callbackCoordinator.incumbent() == null)
+			{
+				throw new IllegalStateException("The solver has not found a solution yet");
+			}
+			
+			return callbackCoordinator.incumbent().roundedValue(var);
+		}
+		else if (solution == null)
+		{
+			throw new IllegalStateException("The solver did not find a solution");
 		}
 		else
 		{
-			try
-			{
-				return (int) Math.round(var.get(GRB.DoubleAttr.X));
-			}
-			catch(GRBException ex)
+			return solution.roundedValue(var);
+		}
+	}
+	
+	// Sums the given coefficients, indexed by variable id, times the values of their variables in the solution
+	private double solutionValue(double[] coefficients)
+	{
+		double value = 0;
+		
+		for (int id = 0; id < coefficients.length; id++)
+		{
+			if (coefficients[id] != 0)
 			{
-				throw new RuntimeException(ex);
+				value += coefficients[id] * Math.round(solution.value(id));
 			}
 		}
+		
+		return value;
+	}
+	
+	// Returns all variables of the model, indexed by variable id. Only available once the model has been built by solve().
+	public GRBVar[] allVars()
+	{
+		if (allVars == null)
+		{
+			throw new IllegalStateException("The model has not been built yet");
+		}
+		
+		return allVars;
+	}
+	
+	// Wraps values of all variables, given in the order of allVars(), for fast lookup by variable
+	public ValueSnapshot snapshot(double[] values)
+	{
+		if (values.length != vars.size())
+		{
+			throw new IllegalArgumentException("Expected " + vars.size() + " values, got " + values.length);
+		}
+		
+		return new ValueSnapshot(vars, values);
 	}
 	
 	@Override
@@ -392,12 +634,12 @@ public class GurobiSolver implements Solver, AutoCloseable
 		return addConstr(lhs, GRB.LESS_EQUAL, rhs, name);
 	}
 	
+	// Rows go through the row sink, which may return an earlier row enforcing the same thing, or null if the row is redundant altogether
 	private GRBConstr addConstr(GRBLinExpr expr, char type, double rhs, String name)
 	{
 		try
 		{
-			GRBConstr constraint = mipModel.addConstr(expr, type, rhs, name);
-			return constraint;
+			return rowSink.add(expr, type, null, rhs, name);
 		}
 		catch (GRBException ex)
 		{
@@ -421,8 +663,7 @@ public class GurobiSolver implements Solver, AutoCloseable
 	{
 		try
 		{
-			GRBConstr constraint = mipModel.addConstr(lhs, type, rhs, name);
-			return constraint;
+			return rowSink.add(lhs, type, rhs, 0, name);
 		}
 		catch (GRBException ex)
 		{
@@ -430,25 +671,111 @@ public class GurobiSolver implements Solver, AutoCloseable
 		}
 	}
 
+	@Override
+	public boolean objectiveNamesUsed()
+	{
+		return objectiveAttribution;
+	}
+	
 	@Override
 	public void addObjective(double weight, GRBVar var, String name)
 	{
-		objectives.add(new Triplet<>(weight, var, name));
+		if (objectiveTerms == null)
+		{
+			throw new IllegalStateException("Objectives can only be added while solving");
+		}
+		
+		objectiveTerms.add(weight, rowSink.canonicalVar(var), name);		// Penalty variables merged by the row sink have their weight summed on the variable they were merged into
+	}
+	
+	// Returns the largest value which all objective coefficients are (close to) integer multiples of, provided all variables with an objective
+	// coefficient are integer. The objective value of any solution is then a multiple of this value, so a solution whose distance to the bound is
+	// less than it is optimal. Returns 0 if there is no such value (or it is too small to be useful). Only available once the model has been built.
+	public double objectiveGranularity()
+	{
+		if (objectiveTerms == null)
+		{
+			throw new IllegalStateException("The model has not been built yet");
+		}
+		
+		double[] coefficients = objectiveTerms.coefficients();
+		double granularity = 0;
+		
+		for (int id = 0; id < coefficients.length; id++)
+		{
+			if (coefficients[id] != 0)
+			{
+				if (vars.type(id) == GRB.CONTINUOUS)
+				{
+					return 0;
+				}
+				
+				granularity = Tools.gcd(granularity, Math.abs(coefficients[id]), OBJECTIVE_GRANULARITY_TOLERANCE);
+				
+				if (granularity < OBJECTIVE_GRANULARITY_TOLERANCE * 10)
+				{
+					return 0;
+				}
+			}
+		}
+		
+		return granularity;
+	}
+	
+	// Returns the smallest positive objective coefficient, that is the cheapest penalty unit, or 0 if there are no penalties. Only available once the model has been built.
+	public double smallestPenalty()
+	{
+		if (objectiveTerms == null)
+		{
+			throw new IllegalStateException("The model has not been built yet");
+		}
+		
+		double smallestPenalty = 0;
+		
+		for (double coefficient : objectiveTerms.coefficients())
+		{
+			if (coefficient > 0 && (smallestPenalty == 0 || coefficient < smallestPenalty))
+			{
+				smallestPenalty = coefficient;
+			}
+		}
+		
+		return smallestPenalty;
+	}
+	
+	// Wall-clock seconds spent building the model, from validation until the objective was set
+	public double buildSeconds()
+	{
+		return buildSeconds;
+	}
+	
+	public double objectiveValue()
+	{
+		try
+		{
+			return mipModel.get(GRB.DoubleAttr.ObjVal);
+		}
+		catch (GRBException ex)
+		{
+			throw new RuntimeException(ex);
+		}
 	}
 	
 	public Map<Session, Pair<Day, Slot>> schedulingMap()
 	{
 		Map<Session, Pair<Day, Slot>> schedulingMap = new HashMap<>();
 		
-		for (Session session : model.sessions())
+		for (int sessionIndex = 0; sessionIndex < model.sessions().size(); sessionIndex++)
 		{
-			for (Day day : model.days())
+			for (int dayIndex = 0; dayIndex < model.days().size(); dayIndex++)
 			{
-				for (Slot slot : model.slots())
+				GRBVar[] startVars = assignVars.startVars(dayIndex, sessionIndex);		// One per slot the session fits into
+				
+				for (int slotIndex = 0; slotIndex < startVars.length; slotIndex++)
 				{
-					if (model.sessionFits(session, slot) && isScheduledAt(day, slot, session))
+					if (varValue(startVars[slotIndex]) == 1)
 					{
-						schedulingMap.put(session, new Pair<>(day, slot));
+						schedulingMap.put(model.sessions().get(sessionIndex), new Pair<>(model.days().get(dayIndex), model.slots().get(slotIndex)));
 					}
 				}
 			}
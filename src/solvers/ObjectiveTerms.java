@@ -0,0 +1,166 @@
+package solvers;
+
+import gurobi.GRBVar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Accumulates the objective of a solver as one coefficient per variable, indexed by variable id. Several terms on the same variable simply add up.
+// Every owner (usually a constraint) also gets its penalties and bonuses accumulated separately by variable id, so the objective of a solution can
+// be broken down per owner even where a penalty and a bonus are put on the same variable. If attribution is enabled, every term is also recorded
+// with its weight and name, so individual penalties can be listed. The names are only kept in that case.
+class ObjectiveTerms
+{
+	private final VarRegistry vars;
+	private final boolean attribution;
+	private final Map<String, OwnerTerms> ownerTerms = new LinkedHashMap<>();
+
+	private double[] coefficients = new double[1024];
+	private int termCount = 0;
+	private OwnerTerms owner = null;
+
+	// Attribution of individual terms
+	private final List<String> names = new ArrayList<>();
+	private int[] termVarIds = new int[0];
+	private double[] termWeights = new double[0];
+
+	public ObjectiveTerms(VarRegistry vars, boolean attribution)
+	{
+		this.vars = vars;
+		this.attribution = attribution;
+		setOwner("<Unknown>");
+	}
+
+	// Terms added from now on are counted as belonging to this owner
+	public void setOwner(String name)
+	{
+		owner = ownerTerms.get(name);
+
+		if (owner == null)
+		{
+			owner = new OwnerTerms();
+			ownerTerms.put(name, owner);
+		}
+	}
+
+	public void add(double weight, GRBVar var, String name)
+	{
+		int id = vars.id(var);
+		coefficients = grow(coefficients, id);
+		coefficients[id] += weight;
+		owner.add(weight, id);
+
+		if (attribution)
+		{
+			if (termCount == termVarIds.length)
+			{
+				int capacity = Math.max(1024, termCount * 2);
+				termVarIds = Arrays.copyOf(termVarIds, capacity);
+				termWeights = Arrays.copyOf(termWeights, capacity);
+			}
+
+			termVarIds[termCount] = id;
+			termWeights[termCount] = weight;
+			names.add(name);
+		}
+
+		termCount++;
+	}
+
+	// Returns the coefficient of every variable created so far, indexed by variable id
+	public double[] coefficients()
+	{
+		return Arrays.copyOf(coefficients, vars.size());
+	}
+
+	public int termCount()
+	{
+		return termCount;
+	}
+
+	public int termCount(String owner)
+	{
+		OwnerTerms terms = ownerTerms.get(owner);
+		return (terms == null ? 0 : terms.termCount);
+	}
+
+	// The owners that added terms, in the order they were first set
+	public List<String> owners()
+	{
+		List<String> owners = new ArrayList<>();
+
+		for (Map.Entry<String, OwnerTerms> entry : ownerTerms.entrySet())
+		{
+			if (entry.getValue().termCount > 0)
+			{
+				owners.add(entry.getKey());
+			}
+		}
+
+		return owners;
+	}
+
+	// The summed weights of the terms with a positive weight the owner added, indexed by variable id. Only covers ids up to the highest one used.
+	public double[] penalties(String owner)
+	{
+		return ownerTerms.get(owner).penalties;
+	}
+
+	// The same for the negative weights, which are bonuses. These are returned as positive numbers.
+	public double[] bonuses(String owner)
+	{
+		return ownerTerms.get(owner).bonuses;
+	}
+
+	public boolean hasAttribution()
+	{
+		return attribution;
+	}
+
+	// The methods below give access to the individual terms and are only available with attribution enabled
+	public int termVarId(int term)
+	{
+		return termVarIds[term];
+	}
+
+	public double termWeight(int term)
+	{
+		return termWeights[term];
+	}
+
+	public String termName(int term)
+	{
+		return names.get(term);
+	}
+
+	private static double[] grow(double[] array, int id)
+	{
+		return (id < array.length ? array : Arrays.copyOf(array, Math.max(id + 1, Math.max(1024, array.length * 2))));
+	}
+
+	// The terms of one owner, with positive and negative weights kept apart
+	private static final class OwnerTerms
+	{
+		private double[] penalties = new double[0];
+		private double[] bonuses = new double[0];
+		private int termCount = 0;
+
+		private void add(double weight, int id)
+		{
+			if (weight > 0)
+			{
+				penalties = grow(penalties, id);
+				penalties[id] += weight;
+			}
+			else if (weight < 0)
+			{
+				bonuses = grow(bonuses, id);
+				bonuses[id] -= weight;
+			}
+
+			termCount++;
+		}
+	}
+}
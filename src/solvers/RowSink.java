@@ -0,0 +1,587 @@
+package solvers;
+
+import gurobi.GRB;
+import gurobi.GRBConstr;
+import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBModel;
+import gurobi.GRBVar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import util.GeputHashMap;
+
+// All rows of a GurobiSolver pass through here. Each row is brought on the canonical form "sorted terms <sense> constant" with its variables
+// identified by their registry id and duplicate terms merged. This lets us recognize and leave out rows which do not add anything to the model:
+//  * Rows trivially satisfied by the bounds of their variables
+//  * Exact duplicates of a previous row, or rows with the same terms as a previous row and a looser right hand side (the tightest one is kept)
+//  * Rows like "x1 + x2 <= 1" whose variables are all part of another such row with a right hand side at most as large
+//  * Penalty rows "terms - p <= constant" identical to another penalty row except for their penalty variable. As such a penalty variable ends up
+//    with the same value in both rows, we keep one of the rows and let the other penalty variable use the variable of the kept row instead.
+//    The objective weights of both variables are then summed on the kept variable.
+// Rows already passed to Gurobi are removed when finish() is called, so finish() must be called once all rows have been added.
+class RowSink
+{
+	private static final int ROWS = 0;
+	private static final int TERMS = 1;
+	private static final int REMOVED = 2;
+
+	private final GRBModel mipModel;
+	private final VarRegistry vars;
+
+	private final List<Row> rows = new ArrayList<>();
+	private final Map<Terms, Row> rowsByTerms = new HashMap<>();
+	private final Map<Terms, List<Row>> penaltyRowGroups = new HashMap<>();
+	private final GeputHashMap<String, int[]> ownerTallies = new GeputHashMap<>();
+	private final Map<GRBVar, GRBVar> mergedVars = new HashMap<>();
+
+	private int[] varRowCounts = new int[0];
+	private Row[][] packingRowsByVar = new Row[0][];
+	private int[] packingRowCounts = new int[0];
+
+	private String owner = "<Unknown>";
+	private boolean finished = false;
+
+	public RowSink(GRBModel mipModel, VarRegistry vars)
+	{
+		this.mipModel = mipModel;
+		this.vars = vars;
+	}
+
+	// Rows added from now on are counted as belonging to this owner (usually a constraint name)
+	public void setOwner(String owner)
+	{
+		this.owner = owner;
+	}
+
+	// Returns the Gurobi row enforcing the given row. This may be an earlier, identical or tighter row. Returns null if the row is always satisfied.
+	public GRBConstr add(GRBLinExpr lhs, char sense, GRBLinExpr rhs, double rhsConstant, String name) throws GRBException
+	{
+		if (finished)
+		{
+			throw new IllegalStateException("Rows cannot be added after the row sink has been finished");
+		}
+
+		int[] tally = ownerTallies.geput(owner, new int[3]);
+		Terms terms = canonicalTerms(lhs, sense, rhs, rhsConstant);
+		ensureVarCapacity();
+
+		// Rows trivially satisfied by variable bounds
+		if (isTriviallySatisfied(terms))
+		{
+			tally[REMOVED]++;
+			return null;
+		}
+
+		// Rows whose terms equal those of an earlier row
+		Terms lhsKey = new Terms(terms.sense, terms.ids, terms.coefs, 0);
+		Row sameTermsRow = rowsByTerms.get(lhsKey);
+
+		if (sameTermsRow != null && !sameTermsRow.removed)
+		{
+			if (sameTermsRow.rhs == terms.rhs)
+			{
+				tally[REMOVED]++;
+				return sameTermsRow.constr;
+			}
+			else if (sense == GRB.LESS_EQUAL)
+			{
+				if (terms.rhs < sameTermsRow.rhs)
+				{
+					sameTermsRow.rhs = terms.rhs;
+					sameTermsRow.rhsChanged = true;
+				}
+
+				tally[REMOVED]++;
+				return sameTermsRow.constr;
+			}
+
+			// Equality rows with the same terms but different right hand sides conflict. Keep both, so the conflict is reported if the model is infeasible.
+		}
+
+		// Packing rows (unit coefficients on non-negative variables) contained in an earlier packing row
+		boolean packing = isPacking(terms);
+
+		if (packing)
+		{
+			Row dominatingRow = findDominatingRow(terms);
+
+			if (dominatingRow != null)
+			{
+				tally[REMOVED]++;
+				return dominatingRow.constr;
+			}
+		}
+
+		// The row is needed (at least for now). Add it to Gurobi.
+		GRBVar[] rowVars = new GRBVar[terms.ids.length];
+
+		for (int i = 0; i < rowVars.length; i++)
+		{
+			rowVars[i] = vars.var(terms.ids[i]);
+		}
+
+		GRBLinExpr expr = new GRBLinExpr();
+		expr.addTerms(terms.coefs, rowVars);
+
+		Row row = new Row(owner, terms);
+		row.constr = mipModel.addConstr(expr, sense, terms.rhs, name);
+		rows.add(row);
+
+		if (sameTermsRow == null || sameTermsRow.removed)
+		{
+			rowsByTerms.put(lhsKey, row);
+		}
+
+		for (int id : terms.ids)
+		{
+			varRowCounts[id]++;
+		}
+
+		tally[ROWS]++;
+		tally[TERMS] += terms.ids.length;
+
+		if (packing)
+		{
+			removeDominatedRows(row);
+
+			for (int id : terms.ids)
+			{
+				if (packingRowCounts[id] == packingRowsByVar[id].length)
+				{
+					packingRowsByVar[id] = Arrays.copyOf(packingRowsByVar[id], Math.max(4, packingRowCounts[id] * 2));
+				}
+
+				packingRowsByVar[id][packingRowCounts[id]++] = row;
+			}
+		}
+		else
+		{
+			registerPenaltyRow(row);
+		}
+
+		return row.constr;
+	}
+
+	// Merges penalty rows and removes all rows found to be redundant from Gurobi. Call mipModel.update() afterwards.
+	public void finish() throws GRBException
+	{
+		if (finished)
+		{
+			return;
+		}
+
+		finished = true;
+
+		for (List<Row> group : penaltyRowGroups.values())
+		{
+			Row keptRow = null;
+
+			for (Row row : group)
+			{
+				if (row.removed || row.rhsChanged || varRowCounts[row.penaltyId] != 1)
+				{
+					continue;	// The row no longer matches its group, or its penalty variable is used elsewhere as well and might not end up with the value of the row
+				}
+
+				if (keptRow == null)
+				{
+					keptRow = row;
+				}
+				else
+				{
+					GRBVar mergedVar = vars.var(row.penaltyId);
+					mergedVars.put(mergedVar, vars.var(keptRow.penaltyId));
+					remove(row);
+
+					// The merged variable is no longer part of any row. Fix it at zero to keep it from floating around.
+					mergedVar.set(GRB.DoubleAttr.UB, 0);
+					vars.setUpperBound(row.penaltyId, 0);
+				}
+			}
+		}
+
+		for (Row row : rows)
+		{
+			if (row.removed)
+			{
+				mipModel.remove(row.constr);
+			}
+			else if (row.rhsChanged)
+			{
+				row.constr.set(GRB.DoubleAttr.RHS, row.rhs);
+			}
+		}
+
+		rows.clear();
+		rowsByTerms.clear();
+		penaltyRowGroups.clear();
+		packingRowsByVar = null;
+	}
+
+	// Returns the variable a penalty variable has been merged into, or the variable itself if it has not been merged
+	public GRBVar canonicalVar(GRBVar var)
+	{
+		GRBVar mergedInto = mergedVars.get(var);
+		return (mergedInto == null ? var : mergedInto);
+	}
+
+	public int rowCount(String owner)
+	{
+		return tally(owner)[ROWS];
+	}
+
+	public int termCount(String owner)
+	{
+		return tally(owner)[TERMS];
+	}
+
+	public int removedCount(String owner)
+	{
+		return tally(owner)[REMOVED];
+	}
+
+	public int removedTotal()
+	{
+		int removedTotal = 0;
+
+		for (int[] tally : ownerTallies.values())
+		{
+			removedTotal += tally[REMOVED];
+		}
+
+		return removedTotal;
+	}
+
+	private int[] tally(String owner)
+	{
+		int[] tally = ownerTallies.get(owner);
+		return (tally == null ? new int[3] : tally);
+	}
+
+	private Terms canonicalTerms(GRBLinExpr lhs, char sense, GRBLinExpr rhs, double rhsConstant) throws GRBException
+	{
+		// Move everything to the left hand side and all constants to the right hand side
+		int lhsSize = lhs.size();
+		int termCount = lhsSize + (rhs == null ? 0 : rhs.size());
+		int[] ids = new int[termCount];
+		double[] coefs = new double[termCount];
+		double constant = rhsConstant - lhs.getConstant();
+
+		for (int i = 0; i < lhsSize; i++)
+		{
+			ids[i] = vars.id(lhs.getVar(i));
+			coefs[i] = lhs.getCoeff(i);
+		}
+
+		if (rhs != null)
+		{
+			for (int i = lhsSize; i < termCount; i++)
+			{
+				ids[i] = vars.id(rhs.getVar(i - lhsSize));
+				coefs[i] = -rhs.getCoeff(i - lhsSize);
+			}
+
+			constant += rhs.getConstant();
+		}
+
+		// Sort terms by variable id (the original term position is kept in the low bits) and merge terms of the same variable
+		long[] order = new long[termCount];
+
+		for (int i = 0; i < termCount; i++)
+		{
+			order[i] = ((long) ids[i] << 32) | i;
+		}
+
+		Arrays.sort(order);
+
+		int[] sortedIds = new int[termCount];
+		double[] sortedCoefs = new double[termCount];
+		int size = 0;
+
+		for (long entry : order)
+		{
+			int id = (int) (entry >>> 32);
+			double coef = coefs[(int) entry];
+
+			if (size > 0 && sortedIds[size - 1] == id)
+			{
+				sortedCoefs[size - 1] += coef;
+			}
+			else
+			{
+				sortedIds[size] = id;
+				sortedCoefs[size] = coef;
+				size++;
+			}
+		}
+
+		// Drop terms which cancelled out
+		int kept = 0;
+
+		for (int i = 0; i < size; i++)
+		{
+			if (sortedCoefs[i] != 0)
+			{
+				sortedIds[kept] = sortedIds[i];
+				sortedCoefs[kept] = sortedCoefs[i];
+				kept++;
+			}
+		}
+
+		return new Terms(sense, Arrays.copyOf(sortedIds, kept), Arrays.copyOf(sortedCoefs, kept), constant);
+	}
+
+	private boolean isTriviallySatisfied(Terms terms)
+	{
+		if (terms.sense == GRB.EQUAL)
+		{
+			return (terms.ids.length == 0 && terms.rhs == 0);
+		}
+
+		// The largest value the terms can take must not exceed the right hand side
+		double maxActivity = 0;
+
+		for (int i = 0; i < terms.ids.length; i++)
+		{
+			double bound = (terms.coefs[i] > 0 ? vars.upperBound(terms.ids[i]) : vars.lowerBound(terms.ids[i]));
+
+			if (Math.abs(bound) >= GRB.INFINITY)
+			{
+				return false;
+			}
+
+			maxActivity += terms.coefs[i] * bound;
+		}
+
+		return (maxActivity <= terms.rhs);
+	}
+
+	private boolean isPacking(Terms terms)
+	{
+		if (terms.sense != GRB.LESS_EQUAL || terms.ids.length == 0)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < terms.ids.length; i++)
+		{
+			if (terms.coefs[i] != 1 || vars.lowerBound(terms.ids[i]) < 0)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// Returns an active packing row containing all variables of the given packing row with a right hand side at most as large, if any
+	private Row findDominatingRow(Terms terms)
+	{
+		// Only rows containing the variable of the given row used by the fewest packing rows need to be checked
+		int rarestId = terms.ids[0];
+
+		for (int id : terms.ids)
+		{
+			if (packingRowCounts[id] < packingRowCounts[rarestId])
+			{
+				rarestId = id;
+			}
+		}
+
+		for (int i = 0; i < packingRowCounts[rarestId]; i++)
+		{
+			Row candidate = packingRowsByVar[rarestId][i];
+
+			if (!candidate.removed && candidate.rhs <= terms.rhs && isSubset(terms.ids, candidate.terms.ids))
+			{
+				return candidate;
+			}
+		}
+
+		return null;
+	}
+
+	// Removes active packing rows whose variables are all contained in the given packing row, and whose right hand side is at least as large
+	private void removeDominatedRows(Row row)
+	{
+		for (int id : row.terms.ids)
+		{
+			for (int i = 0; i < packingRowCounts[id]; i++)
+			{
+				Row candidate = packingRowsByVar[id][i];
+
+				// Each candidate is only checked when visiting its first variable
+				if (!candidate.removed && candidate.terms.ids[0] == id && candidate.rhs >= row.rhs && isSubset(candidate.terms.ids, row.terms.ids))
+				{
+					remove(candidate);
+				}
+			}
+		}
+	}
+
+	private void registerPenaltyRow(Row row)
+	{
+		// A penalty row has exactly one term "-p" with p non-negative and unbounded from above, and at least one other term
+		Terms terms = row.terms;
+		int penaltyIndex = -1;
+
+		for (int i = 0; i < terms.ids.length; i++)
+		{
+			if (terms.coefs[i] == -1 && vars.lowerBound(terms.ids[i]) == 0 && vars.upperBound(terms.ids[i]) >= GRB.INFINITY)
+			{
+				if (penaltyIndex != -1)
+				{
+					return;
+				}
+
+				penaltyIndex = i;
+			}
+		}
+
+		if (terms.sense != GRB.LESS_EQUAL || penaltyIndex == -1 || terms.ids.length < 2)
+		{
+			return;
+		}
+
+		int[] ids = new int[terms.ids.length - 1];
+		double[] coefs = new double[terms.ids.length - 1];
+		System.arraycopy(terms.ids, 0, ids, 0, penaltyIndex);
+		System.arraycopy(terms.ids, penaltyIndex + 1, ids, penaltyIndex, ids.length - penaltyIndex);
+		System.arraycopy(terms.coefs, 0, coefs, 0, penaltyIndex);
+		System.arraycopy(terms.coefs, penaltyIndex + 1, coefs, penaltyIndex, coefs.length - penaltyIndex);
+
+		row.penaltyId = terms.ids[penaltyIndex];
+
+		Terms groupKey = new Terms(terms.sense, ids, coefs, terms.rhs);
+		List<Row> group = penaltyRowGroups.get(groupKey);
+
+		if (group == null)
+		{
+			group = new LinkedList<>();
+			penaltyRowGroups.put(groupKey, group);
+		}
+
+		group.add(row);
+	}
+
+	private void remove(Row row)
+	{
+		row.removed = true;
+
+		for (int id : row.terms.ids)
+		{
+			varRowCounts[id]--;
+		}
+
+		int[] tally = ownerTallies.get(row.owner);
+		tally[ROWS]--;
+		tally[TERMS] -= row.terms.ids.length;
+		tally[REMOVED]++;
+	}
+
+	private void ensureVarCapacity()
+	{
+		int varCount = vars.size();
+
+		if (varRowCounts.length < varCount)
+		{
+			int capacity = Math.max(varCount, varRowCounts.length * 2);
+			int previousCapacity = packingRowsByVar.length;
+
+			varRowCounts = Arrays.copyOf(varRowCounts, capacity);
+			packingRowCounts = Arrays.copyOf(packingRowCounts, capacity);
+			packingRowsByVar = Arrays.copyOf(packingRowsByVar, capacity);
+
+			for (int id = previousCapacity; id < capacity; id++)
+			{
+				packingRowsByVar[id] = new Row[0];
+			}
+		}
+	}
+
+	// Both arrays must be sorted
+	private static boolean isSubset(int[] subset, int[] superset)
+	{
+		if (subset.length > superset.length)
+		{
+			return false;
+		}
+
+		int j = 0;
+
+		for (int id : subset)
+		{
+			while (j < superset.length && superset[j] < id)
+			{
+				j++;
+			}
+
+			if (j == superset.length || superset[j] != id)
+			{
+				return false;
+			}
+
+			j++;
+		}
+
+		return true;
+	}
+
+	private static final class Terms
+	{
+		final char sense;
+		final int[] ids;
+		final double[] coefs;
+		final double rhs;
+		final int hash;
+
+		Terms(char sense, int[] ids, double[] coefs, double rhs)
+		{
+			this.sense = sense;
+			this.ids = ids;
+			this.coefs = coefs;
+			this.rhs = rhs;
+			this.hash = 31 * (31 * (31 * sense + Arrays.hashCode(ids)) + Arrays.hashCode(coefs)) + Double.valueOf(rhs).hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof Terms))
+			{
+				return false;
+			}
+
+			Terms other = (Terms) object;
+			return (hash == other.hash && sense == other.sense && Double.compare(rhs, other.rhs) == 0 && Arrays.equals(ids, other.ids) && Arrays.equals(coefs, other.coefs));
+		}
+	}
+
+	private static final class Row
+	{
+		final String owner;
+		final Terms terms;
+		double rhs;
+		GRBConstr constr = null;
+		int penaltyId = -1;
+		boolean removed = false;
+		boolean rhsChanged = false;
+
+		Row(String owner, Terms terms)
+		{
+			this.owner = owner;
+			this.terms = terms;
+			this.rhs = terms.rhs;
+		}
+	}
+}
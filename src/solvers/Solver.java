@@ -22,6 +22,7 @@ public interface Solver
 	// Methods used by constraints when called upon to update the model
 	GRBVar startVar(Day day, Slot slot, Session session);		// Method for returning the assignment variable for a session corresponding to it being scheduled to start at a specific time
 	GRBVar[] assignVars(Day day, Slot slot, Session session);	// Method for retuning all assignment variables whose scheduling covers a specific time
+	GRBVar[] dayVars(Day day, Session session);					// Method for returning variables whose sum indicates whether a session is scheduled on a specific day
 	
 	GRBVar addLinearVar(double minValue, Double maxValue, String name);
 	GRBVar addIntegerVar(double minValue, Double maxValue, String name);
@@ -32,5 +33,6 @@ public interface Solver
 	GRBConstr addEqualsConstr(GRBLinExpr lhs, GRBLinExpr rhs, String name);
 	GRBConstr addLessOrEqualsConstr(GRBLinExpr lhs, GRBLinExpr rhs, String name);
 	
+	boolean objectiveNamesUsed();		// Whether addObjective() keeps the names of terms. If not, constraints pass null instead of building names.
 	void addObjective(double weight, GRBVar var, String name);
 }
@@ -0,0 +1,33 @@
+package solvers;
+
+import gurobi.GRBVar;
+
+// The values of all variables of a solver at one point in time, fetched in a single call and indexed by variable id.
+// Reading values from here avoids a call into Gurobi for every single variable.
+public class ValueSnapshot
+{
+	private final VarRegistry vars;
+	private final double[] values;
+
+	ValueSnapshot(VarRegistry vars, double[] values)
+	{
+		this.vars = vars;
+		this.values = values;
+	}
+
+	public double value(GRBVar var)
+	{
+		return values[vars.id(var)];
+	}
+
+	// The rounding used here is very important, as the solver might return non-integral values very close to the integers they represent
+	public int roundedValue(GRBVar var)
+	{
+		return (int) Math.round(value(var));
+	}
+
+	double value(int id)
+	{
+		return values[id];
+	}
+}
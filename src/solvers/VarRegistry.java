@@ -0,0 +1,85 @@
+package solvers;
+
+import gurobi.GRBVar;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Gives every variable created by a solver a dense id in creation order, so per-variable data can be kept in primitive arrays instead of maps
+class VarRegistry
+{
+	private final Map<GRBVar, Integer> ids = new IdentityHashMap<>();
+	private GRBVar[] vars = new GRBVar[1024];
+	private double[] lowerBounds = new double[1024];
+	private double[] upperBounds = new double[1024];
+	private char[] types = new char[1024];
+	private int size = 0;
+
+	public int add(GRBVar var, double lowerBound, double upperBound, char type)
+	{
+		if (size == vars.length)
+		{
+			vars = Arrays.copyOf(vars, size * 2);
+			lowerBounds = Arrays.copyOf(lowerBounds, size * 2);
+			upperBounds = Arrays.copyOf(upperBounds, size * 2);
+			types = Arrays.copyOf(types, size * 2);
+		}
+
+		vars[size] = var;
+		lowerBounds[size] = lowerBound;
+		upperBounds[size] = upperBound;
+		types[size] = type;
+		ids.put(var, size);
+
+		return size++;
+	}
+
+	public int id(GRBVar var)
+	{
+		Integer id = ids.get(var);
+
+		if (id == null)
+		{
+			throw new IllegalArgumentException("Variable was not created by this solver");
+		}
+
+		return id;
+	}
+
+	public GRBVar var(int id)
+	{
+		return vars[id];
+	}
+
+	public double lowerBound(int id)
+	{
+		return lowerBounds[id];
+	}
+
+	public double upperBound(int id)
+	{
+		return upperBounds[id];
+	}
+
+	// GRB.BINARY, GRB.INTEGER or GRB.CONTINUOUS
+	public char type(int id)
+	{
+		return types[id];
+	}
+
+	public void setUpperBound(int id, double upperBound)
+	{
+		upperBounds[id] = upperBound;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	// Returns all variables, indexed by id
+	public GRBVar[] vars()
+	{
+		return Arrays.copyOf(vars, size);
+	}
+}
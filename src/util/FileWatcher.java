@@ -0,0 +1,128 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Waits for changes to a set of files and folders. A WatchService can only watch folders, so files are watched through the folder containing them.
+// Only changes to the watched files themselves and to files with the given extension directly inside the watched folders are reported. This
+// leaves out files written next to the input, like caches.
+public class FileWatcher implements AutoCloseable
+{
+	private final WatchService watchService;
+	private final Set<Path> files = new HashSet<>();
+	private final Set<Path> folders = new HashSet<>();
+	private final String folderExtension;
+
+	public FileWatcher(List<File> paths, String folderExtension)
+	{
+		this.folderExtension = folderExtension;
+
+		try
+		{
+			watchService = FileSystems.getDefault().newWatchService();
+			Set<Path> registered = new HashSet<>();
+
+			for (File path : paths)
+			{
+				Path absolutePath = path.toPath().toAbsolutePath().normalize();
+				Path folder;
+
+				if (path.isDirectory())
+				{
+					folders.add(absolutePath);
+					folder = absolutePath;
+				}
+				else
+				{
+					files.add(absolutePath);
+					folder = absolutePath.getParent();
+				}
+
+				if (registered.add(folder))
+				{
+					folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	// Blocks until a watched file changes and then until no further changes have happened for the given number of milliseconds, as editors often
+	// save a file in several steps. Returns the changed files, or the watched folders if changes were lost because too many happened at once.
+	public Set<Path> awaitChanges(long settleMillis)
+	{
+		Set<Path> changes = new HashSet<>();
+
+		try
+		{
+			// Wait for the first relevant change
+			while (changes.isEmpty())
+			{
+				collectChanges(watchService.take(), changes);
+			}
+
+			// Then for the changes to settle
+			WatchKey key;
+
+			while ((key = watchService.poll(settleMillis, TimeUnit.MILLISECONDS)) != null)
+			{
+				collectChanges(key, changes);
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+
+		return changes;
+	}
+
+	private void collectChanges(WatchKey key, Set<Path> changes)
+	{
+		Path folder = (Path) key.watchable();
+
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				changes.add(folder);
+				continue;
+			}
+
+			Path path = folder.resolve((Path) event.context());
+
+			if (files.contains(path) || (folders.contains(folder) && path.getFileName().toString().endsWith(folderExtension)))
+			{
+				changes.add(path);
+			}
+		}
+
+		key.reset();
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			watchService.close();
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+}
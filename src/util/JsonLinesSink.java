@@ -0,0 +1,124 @@
+package util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Writes events as JSON objects, one per line, to a file. Events are queued and written by a background thread, so emitting an event never
+// waits for the disk. The file is flushed whenever the queue runs empty and closed by close(), which writes all events emitted before it.
+public class JsonLinesSink implements AutoCloseable
+{
+	private static final ObjectMapper jsonMapper = new ObjectMapper();
+	private static final ObjectNode END_OF_STREAM = jsonMapper.createObjectNode();
+	
+	private final BlockingQueue<ObjectNode> queue = new LinkedBlockingQueue<>();
+	private final Writer out;
+	private final Thread writer;
+	private volatile boolean closed = false;
+	
+	public JsonLinesSink(File file)
+	{
+		try
+		{
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+		
+		writer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeLoop();
+			}
+		}, getClass().getSimpleName() + " " + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	// Returns a new event of the given type with a timestamp (milliseconds since the epoch). Fill in its fields and pass it to emit().
+	public ObjectNode event(String type)
+	{
+		ObjectNode event = jsonMapper.createObjectNode();
+		event.put("timestamp", System.currentTimeMillis());
+		event.put("type", type);
+		
+		return event;
+	}
+	
+	public void emit(ObjectNode event)
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("Cannot emit events to a closed sink");
+		}
+		
+		queue.add(event);
+	}
+	
+	@Override
+	public void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+		
+		closed = true;
+		queue.add(END_OF_STREAM);
+		
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void writeLoop()
+	{
+		List<ObjectNode> batch = new ArrayList<>();
+		
+		try (Writer output = out)
+		{
+			while (true)
+			{
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				
+				for (ObjectNode event : batch)
+				{
+					if (event == END_OF_STREAM)
+					{
+						return;
+					}
+					
+					output.write(jsonMapper.writeValueAsString(event));
+					output.write('\n');
+				}
+				
+				batch.clear();
+				output.flush();
+			}
+		}
+		catch (IOException | InterruptedException ex)
+		{
+			ex.printStackTrace();	// Telemetry must never take the solve down with it
+		}
+	}
+}
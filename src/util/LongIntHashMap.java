@@ -0,0 +1,104 @@
+package util;
+
+import java.util.Arrays;
+
+// Open addressing hash map from primitive long keys to primitive int values. Avoids allocating boxed keys and entries for every lookup,
+// which matters in hot loops over millions of keys.
+public class LongIntHashMap
+{
+	private static final double MAX_LOAD = 0.5;
+	
+	private final int missingValue;
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+
+	public LongIntHashMap(int expectedSize, int missingValue)
+	{
+		this.missingValue = missingValue;
+		allocate(Math.max(16, Integer.highestOneBit(Math.max(1, (int) (expectedSize / MAX_LOAD))) << 1));
+	}
+	
+	// Returns the value for the given key or the missing value specified to the constructor if there is none
+	public int get(long key)
+	{
+		int index = find(key);
+		return (used[index] ? values[index] : missingValue);
+	}
+	
+	public void put(long key, int value)
+	{
+		int index = find(key);
+		
+		if (!used[index])
+		{
+			used[index] = true;
+			keys[index] = key;
+			size++;
+		}
+		
+		values[index] = value;
+		
+		if (size > keys.length * MAX_LOAD)
+		{
+			rehash();
+		}
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	private int find(long key)
+	{
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		
+		while (used[index] && keys[index] != key)
+		{
+			index = (index + 1) & mask;
+		}
+		
+		return index;
+	}
+	
+	private void rehash()
+	{
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		
+		allocate(oldKeys.length * 2);
+		size = 0;
+		
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+	
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		Arrays.fill(values, missingValue);
+	}
+	
+	private static int hash(long key)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;	// Fibonacci hashing spreads consecutive keys well
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	// Combines two non-negative ints into a single key
+	public static long key(int first, int second)
+	{
+		return ((long) first << 32) | (second & 0xFFFFFFFFL);
+	}
+}
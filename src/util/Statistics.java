@@ -0,0 +1,142 @@
+package util;
+
+import java.util.List;
+
+// Descriptive statistics and Welch's t-test for comparing benchmark samples
+public class Statistics
+{
+	private static final int INCOMPLETE_BETA_ITERATIONS = 200;
+	private static final double INCOMPLETE_BETA_EPSILON = 1e-12;
+	private static final double[] LANCZOS_COEFFICIENTS = {76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+	
+	public static double mean(List<Double> values)
+	{
+		double sum = 0;
+		
+		for (double value : values)
+		{
+			sum += value;
+		}
+		
+		return sum / values.size();
+	}
+	
+	// Sample standard deviation (n - 1 in the denominator). Zero for less than two values.
+	public static double stdev(List<Double> values)
+	{
+		double mean = mean(values);
+		double sum = 0;
+		
+		for (double value : values)
+		{
+			sum += (value - mean) * (value - mean);
+		}
+		
+		return (values.size() > 1 ? Math.sqrt(sum / (values.size() - 1)) : 0);
+	}
+	
+	public static double min(List<Double> values)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		
+		for (double value : values)
+		{
+			min = Math.min(min, value);
+		}
+		
+		return min;
+	}
+	
+	public static double max(List<Double> values)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		
+		for (double value : values)
+		{
+			max = Math.max(max, value);
+		}
+		
+		return max;
+	}
+	
+	// One-sided p-value of Welch's t-test for the hypothesis that the mean of the samples is greater than the mean of the baseline samples.
+	// Needs at least two values in each list. Returns 1 if both lists have no variance, as no difference can then be significant.
+	public static double welchGreaterPValue(List<Double> samples, List<Double> baseline)
+	{
+		if (samples.size() < 2 || baseline.size() < 2)
+		{
+			throw new IllegalArgumentException("Welch's t-test needs at least two values in each sample");
+		}
+		
+		double sampleVariance = Math.pow(stdev(samples), 2) / samples.size();
+		double baselineVariance = Math.pow(stdev(baseline), 2) / baseline.size();
+		double variance = sampleVariance + baselineVariance;
+		
+		if (variance == 0)
+		{
+			return 1;
+		}
+		
+		double t = (mean(samples) - mean(baseline)) / Math.sqrt(variance);
+		double degreesOfFreedom = variance * variance / (sampleVariance * sampleVariance / (samples.size() - 1) + baselineVariance * baselineVariance / (baseline.size() - 1));
+		double tailProbability = 0.5 * incompleteBeta(degreesOfFreedom / (degreesOfFreedom + t * t), degreesOfFreedom / 2, 0.5);	// P(T > |t|)
+		
+		return (t > 0 ? tailProbability : 1 - tailProbability);
+	}
+	
+	// Regularized incomplete beta function I_x(a, b), evaluated by its continued fraction (modified Lentz's method)
+	private static double incompleteBeta(double x, double a, double b)
+	{
+		if (x <= 0 || x >= 1)
+		{
+			return (x <= 0 ? 0 : 1);
+		}
+		
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+		
+		// The continued fraction converges quickly only below this point. Use the symmetry I_x(a, b) = 1 - I_(1-x)(b, a) above it.
+		if (x > (a + 1) / (a + b + 2))
+		{
+			return 1 - incompleteBeta(1 - x, b, a);
+		}
+		
+		double c = 1;
+		double d = 1 - (a + b) * x / (a + 1);
+		d = 1 / (Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d);
+		double fraction = d;
+		
+		for (int m = 1; m <= INCOMPLETE_BETA_ITERATIONS; m++)
+		{
+			// Even and odd steps of the continued fraction
+			for (int step = 0; step < 2; step++)
+			{
+				double numerator = (step == 0 ? m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m)) : -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1)));
+				d = 1 + numerator * d;
+				d = 1 / (Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d);
+				c = 1 + numerator / c;
+				c = (Math.abs(c) < Double.MIN_NORMAL ? Double.MIN_NORMAL : c);
+				fraction *= d * c;
+				
+				if (step == 1 && Math.abs(d * c - 1) < INCOMPLETE_BETA_EPSILON)
+				{
+					return front * fraction / a;
+				}
+			}
+		}
+		
+		return front * fraction / a;
+	}
+	
+	// Natural logarithm of the gamma function by the Lanczos approximation
+	private static double logGamma(double x)
+	{
+		double series = 1.000000000190015;
+		
+		for (int i = 0; i < LANCZOS_COEFFICIENTS.length; i++)
+		{
+			series += LANCZOS_COEFFICIENTS[i] / (x + i + 1);
+		}
+		
+		return (x + 0.5) * Math.log(x + 5.5) - (x + 5.5) + Math.log(2.5066282746310005 * series / x);
+	}
+}
@@ -61,4 +61,23 @@ public class Tools
 	{
 		return String.format("%d:%02d:%02d", seconds/3600, (seconds % 3600) / 60, (seconds % 60));
 	}
+	
+	// Greatest common divisor of two non-negative doubles, treating remainders within the tolerance of zero (or of the divisor) as zero
+	public static double gcd(double a, double b, double tolerance)
+	{
+		while (b > tolerance)
+		{
+			double remainder = a % b;
+			
+			if (remainder < tolerance || (b - remainder) < tolerance)
+			{
+				remainder = 0;
+			}
+			
+			a = b;
+			b = remainder;
+		}
+		
+		return a;
+	}
 }
\ No newline at end of file